@@ -0,0 +1,205 @@
+package com.terraintoggle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Recognises saved instances by the set of template chunks they are built from, rather than an exact hash,
+// so randomised layouts (ToA paths, CoX rooms) and different scene offsets still match.
+//
+// Each instance is reduced to a MinHash signature; the fraction of equal signature slots estimates the Jaccard
+// similarity of the two chunk sets. Signatures are bucketed by band (LSH), so a lookup only compares against
+// saved instances that share at least one band instead of scanning all of them.
+class InstanceMatcher
+{
+    static final int HASHES = 32;
+    private static final int ROWS = 2;
+    private static final int BANDS = HASHES / ROWS;
+
+    // Per-slot seeds for the MinHash family
+    private static final int[] SEEDS = new int[HASHES];
+
+    static
+    {
+        int seed = 0x2545F491;
+        for (int i = 0; i < HASHES; i++)
+        {
+            seed = mix(seed + 0x9E3779B9);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+
+    // MinHash of the non-empty template chunks, ignoring chunk rotation. Null if there are none.
+    static int[] signature(int[][][] chunks)
+    {
+        Set<Integer> set = new HashSet<>();
+        for (int[][] plane : chunks)
+        {
+            for (int[] column : plane)
+            {
+                for (int chunk : column)
+                {
+                    if (chunk != -1)
+                        set.add(chunk & ~0x6);  // bits 1-2 are the rotation
+                }
+            }
+        }
+
+        if (set.isEmpty())
+            return null;
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int chunk : set)
+        {
+            for (int i = 0; i < HASHES; i++)
+            {
+                int h = mix(chunk ^ SEEDS[i]) & 0x7FFFFFFF;
+                if (h < signature[i])
+                    signature[i] = h;
+            }
+        }
+        return signature;
+    }
+
+    static double similarity(int[] a, int[] b)
+    {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++)
+        {
+            if (a[i] == b[i])
+                equal++;
+        }
+        return (double) equal / HASHES;
+    }
+
+    boolean contains(int id)
+    {
+        return signatures.containsKey(id);
+    }
+
+    void add(int id, int[] signature)
+    {
+        remove(id);
+        signatures.put(id, signature);
+        for (int band = 0; band < BANDS; band++)
+            buckets.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(1)).add(id);
+    }
+
+    void remove(int id)
+    {
+        int[] signature = signatures.remove(id);
+        if (signature == null)
+            return;
+
+        for (int band = 0; band < BANDS; band++)
+        {
+            long key = bandKey(signature, band);
+            List<Integer> bucket = buckets.get(key);
+            if (bucket != null)
+            {
+                bucket.remove((Integer) id);
+                if (bucket.isEmpty())
+                    buckets.remove(key);
+            }
+        }
+    }
+
+    // Saved instance most similar to the signature, or -1 if none reaches the threshold (0-1)
+    int match(int[] signature, double threshold)
+    {
+        int best = -1;
+        double bestSimilarity = threshold;
+        Set<Integer> seen = new HashSet<>();
+
+        for (int band = 0; band < BANDS; band++)
+        {
+            List<Integer> bucket = buckets.get(bandKey(signature, band));
+            if (bucket == null)
+                continue;
+
+            for (int id : bucket)
+            {
+                if (!seen.add(id))
+                    continue;
+
+                double s = similarity(signature, signatures.get(id));
+                if (s >= bestSimilarity)
+                {
+                    best = id;
+                    bestSimilarity = s;
+                }
+            }
+        }
+        return best;
+    }
+
+    // "id:hex,hex,...;id:..." for the config
+    String serialize()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, int[]> entry : signatures.entrySet())
+        {
+            if (sb.length() > 0) sb.append(";");
+            sb.append(entry.getKey()).append(":");
+            int[] signature = entry.getValue();
+            for (int i = 0; i < signature.length; i++)
+            {
+                if (i > 0) sb.append(",");
+                sb.append(Integer.toHexString(signature[i]));
+            }
+        }
+        return sb.toString();
+    }
+
+    void load(String serialized)
+    {
+        signatures.clear();
+        buckets.clear();
+        if (serialized == null || serialized.isEmpty())
+            return;
+
+        for (String entry : serialized.split(";"))
+        {
+            try
+            {
+                int colon = entry.indexOf(':');
+                String[] parts = entry.substring(colon + 1).split(",");
+                if (colon <= 0 || parts.length != HASHES)
+                    continue;
+
+                int[] signature = new int[HASHES];
+                for (int i = 0; i < HASHES; i++)
+                    signature[i] = Integer.parseUnsignedInt(parts[i], 16);
+                add(Integer.parseInt(entry.substring(0, colon)), signature);
+            }
+            catch (NumberFormatException ignored) {}
+        }
+    }
+
+    private static long bandKey(int[] signature, int band)
+    {
+        long key = band;
+        for (int r = 0; r < ROWS; r++)
+            key = key * 0x100000001B3L + signature[band * ROWS + r];
+        return key;
+    }
+
+    // murmur3 finalizer
+    private static int mix(int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
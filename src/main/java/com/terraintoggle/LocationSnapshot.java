@@ -0,0 +1,42 @@
+package com.terraintoggle;
+
+// The player's location as seen by the rule engine, captured once per evaluation.
+// Fields that don't apply (e.g. room outside a raid) are -1.
+class LocationSnapshot
+{
+    static final LocationSnapshot NONE = new LocationSnapshot(-1, -1, -1, -1, -1);
+
+    final int region;    // canonical region (template region inside instances)
+    final int instance;  // stable instance ID, -1 outside instances
+    final int room;      // raid room template, -1 outside raids
+    final int area;      // what the Shift+Right-Click menu saves: region, room or instance
+    final int plane;
+
+    LocationSnapshot(int region, int instance, int room, int area, int plane)
+    {
+        this.region = region;
+        this.instance = instance;
+        this.room = room;
+        this.area = area;
+        this.plane = plane;
+    }
+
+    int get(TerrainRule.Field field)
+    {
+        switch (field)
+        {
+            case REGION:
+                return region;
+            case INSTANCE:
+                return instance;
+            case ROOM:
+                return room;
+            case AREA:
+                return area;
+            case PLANE:
+                return plane;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.terraintoggle;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Region ID -> name lookups from the bundled region-names.bin, loaded the first time a name is asked for.
+// The file is generated at build time (generateRegionAtlas in build.gradle) from src/main/atlas/region-names.csv;
+// edit the CSV, never the binary.
+//
+// File layout (big-endian):
+//   int    magic, int count
+//   int[count]      region IDs, sorted
+//   int[count + 1]  offsets of each name in the string pool (entry i is pool[offsets[i], offsets[i + 1]))
+//   int[count]      entry indices sorted by lower-case name, for prefix search
+//   byte[]          UTF-8 string pool
+//
+// Names are decoded on demand rather than kept in a map for the whole session.
+@Slf4j
+@Singleton
+public class RegionAtlas
+{
+    private static final int MAGIC = 0x5454524E;
+    private static final String RESOURCE = "region-names.bin";
+
+    private boolean loaded = false;
+    private int[] ids = new int[0];
+    private int[] offsets = new int[] {0};
+    private int[] nameOrder = new int[0];
+    private byte[] pool = new byte[0];
+
+    // The overlay asks for the same region every frame
+    private int lastId = -1;
+    private String lastName;
+
+    // Name of the region, or null if the atlas doesn't know it
+    public synchronized String name(int regionId)
+    {
+        if (regionId == lastId)
+            return lastName;
+
+        load();
+        int i = Arrays.binarySearch(ids, regionId);
+        lastId = regionId;
+        lastName = i >= 0 ? nameAt(i) : null;
+        return lastName;
+    }
+
+    // "Lumbridge (12850)", or just the ID if it has no name
+    public String label(int regionId)
+    {
+        String name = name(regionId);
+        return name != null ? name + " (" + regionId + ")" : String.valueOf(regionId);
+    }
+
+    // Regions whose name starts with the prefix, ignoring case
+    public synchronized List<Integer> findByPrefix(String prefix)
+    {
+        load();
+        String needle = prefix.toLowerCase(Locale.ROOT);
+
+        // Lower bound of the prefix in name order
+        int lo = 0, hi = nameOrder.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (lowerNameAt(nameOrder[mid]).compareTo(needle) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        List<Integer> matches = new ArrayList<>();
+        for (int n = lo; n < nameOrder.length; n++)
+        {
+            int entry = nameOrder[n];
+            if (!lowerNameAt(entry).startsWith(needle))
+                break;
+            matches.add(ids[entry]);
+        }
+        return matches;
+    }
+
+    private String nameAt(int entry)
+    {
+        return new String(pool, offsets[entry], offsets[entry + 1] - offsets[entry], StandardCharsets.UTF_8);
+    }
+
+    private String lowerNameAt(int entry)
+    {
+        return nameAt(entry).toLowerCase(Locale.ROOT);
+    }
+
+    private void load()
+    {
+        if (loaded)
+            return;
+        loaded = true;
+
+        try (InputStream in = RegionAtlas.class.getResourceAsStream(RESOURCE))
+        {
+            if (in == null)
+            {
+                log.warn("Region atlas {} is missing", RESOURCE);
+                return;
+            }
+
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC)
+            {
+                log.warn("Region atlas {} is not a region atlas", RESOURCE);
+                return;
+            }
+
+            int count = data.readInt();
+            int[] ids = readInts(data, count);
+            int[] offsets = readInts(data, count + 1);
+            int[] nameOrder = readInts(data, count);
+            byte[] pool = new byte[offsets[count]];
+            data.readFully(pool);
+
+            this.ids = ids;
+            this.offsets = offsets;
+            this.nameOrder = nameOrder;
+            this.pool = pool;
+            log.debug("Loaded {} region names", count);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to load region atlas", e);
+        }
+    }
+
+    private static int[] readInts(DataInputStream data, int count) throws IOException
+    {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++)
+            values[i] = data.readInt();
+        return values;
+    }
+}
@@ -0,0 +1,124 @@
+package com.terraintoggle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Named sets of regions defined as rectangles or polygons in region coordinate space
+// (region X is the high byte of the region ID, region Y the low byte). Each group is rasterised
+// into a 256x256 bitmap up front, so membership is a single bit test.
+class RegionGroups
+{
+    static final int GRID = 256;
+    private static final int WORDS = GRID * GRID / 64;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<long[]> bitmaps = new ArrayList<>();
+
+    int size()
+    {
+        return names.size();
+    }
+
+    // -1 if no group has that name
+    int indexOf(String name)
+    {
+        for (int i = 0; i < names.size(); i++)
+        {
+            if (names.get(i).equalsIgnoreCase(name))
+                return i;
+        }
+        return -1;
+    }
+
+    // Index of the named group, creating it if needed. Repeated definitions add to the same group.
+    int define(String name)
+    {
+        int group = indexOf(name);
+        if (group != -1)
+            return group;
+
+        names.add(name);
+        bitmaps.add(new long[WORDS]);
+        return names.size() - 1;
+    }
+
+    boolean contains(int group, int regionId)
+    {
+        if (regionId < 0 || regionId >= GRID * GRID)
+            return false;
+        return (bitmaps.get(group)[regionId >>> 6] & (1L << regionId)) != 0;
+    }
+
+    // Adds every region of another group. Returns true if that added anything.
+    boolean addGroup(int group, int other)
+    {
+        long[] bitmap = bitmaps.get(group);
+        long[] included = bitmaps.get(other);
+        boolean changed = false;
+        for (int i = 0; i < WORDS; i++)
+        {
+            long merged = bitmap[i] | included[i];
+            changed |= merged != bitmap[i];
+            bitmap[i] = merged;
+        }
+        return changed;
+    }
+
+    // Inclusive rectangle of region coordinates, corners in any order
+    void addRect(int group, int x1, int y1, int x2, int y2)
+    {
+        long[] bitmap = bitmaps.get(group);
+        for (int x = clamp(Math.min(x1, x2)); x <= clamp(Math.max(x1, x2)); x++)
+        {
+            for (int y = clamp(Math.min(y1, y2)); y <= clamp(Math.max(y1, y2)); y++)
+                set(bitmap, x, y);
+        }
+    }
+
+    // Every region whose centre lies inside the polygon (even-odd rule), plus the regions the vertices are in
+    void addPolygon(int group, int[] xs, int[] ys)
+    {
+        long[] bitmap = bitmaps.get(group);
+        int minX = GRID, minY = GRID, maxX = -1, maxY = -1;
+        for (int i = 0; i < xs.length; i++)
+        {
+            minX = Math.min(minX, clamp(xs[i]));
+            maxX = Math.max(maxX, clamp(xs[i]));
+            minY = Math.min(minY, clamp(ys[i]));
+            maxY = Math.max(maxY, clamp(ys[i]));
+            set(bitmap, clamp(xs[i]), clamp(ys[i]));
+        }
+
+        for (int x = minX; x <= maxX; x++)
+        {
+            for (int y = minY; y <= maxY; y++)
+            {
+                if (insidePolygon(xs, ys, x + 0.5, y + 0.5))
+                    set(bitmap, x, y);
+            }
+        }
+    }
+
+    private static boolean insidePolygon(int[] xs, int[] ys, double px, double py)
+    {
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++)
+        {
+            if ((ys[i] > py) != (ys[j] > py)
+                    && px < (double) (xs[j] - xs[i]) * (py - ys[i]) / (ys[j] - ys[i]) + xs[i])
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    private static void set(long[] bitmap, int x, int y)
+    {
+        int regionId = (x << 8) | y;
+        bitmap[regionId >>> 6] |= 1L << regionId;
+    }
+
+    private static int clamp(int coordinate)
+    {
+        return Math.max(0, Math.min(GRID - 1, coordinate));
+    }
+}
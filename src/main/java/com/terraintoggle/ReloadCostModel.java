@@ -0,0 +1,153 @@
+package com.terraintoggle;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Rolling history of how long the scene reloads we force take, per area.
+// Keeps the last SAMPLES timings for the MAX_AREAS most recently reloaded areas and persists them between sessions
+// as "area:ms,ms,..." lines.
+@Slf4j
+class ReloadCostModel
+{
+    private static final int SAMPLES = 8;
+    private static final int MAX_AREAS = 256;
+
+    // Samples recorded between saves, so a session that ends without the plugin stopping loses little
+    static final int SAVE_EVERY = 16;
+
+    // Longer than any real scene load; anything above it is a timing gone wrong (e.g. the client sat in another
+    // game state) and is dropped rather than recorded
+    static final int MAX_SAMPLE_MILLIS = 30_000;
+
+    private static class History
+    {
+        final int[] samples = new int[SAMPLES];
+        int count;
+        int next;
+
+        void add(int millis)
+        {
+            samples[next] = millis;
+            next = (next + 1) % SAMPLES;
+            count = Math.min(count + 1, SAMPLES);
+        }
+
+        // Median, so a single outlier can't decide deferral on its own
+        int median()
+        {
+            int[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int mid = count / 2;
+            return count % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+        }
+    }
+
+    // Insertion order, with record() re-inserting, so the least recently reloaded area is dropped first.
+    // (Access order would let the overlay's per-frame medianMillis() lookups decide instead.)
+    private final Map<Integer, History> histories = new LinkedHashMap<Integer, History>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, History> eldest)
+        {
+            return size() > MAX_AREAS;
+        }
+    };
+
+    private int unsaved;
+
+    // Returns true once SAVE_EVERY samples have been recorded since the last save
+    synchronized boolean record(int area, int millis)
+    {
+        if (millis < 0 || millis > MAX_SAMPLE_MILLIS)
+            return false;
+
+        History history = histories.remove(area);
+        if (history == null)
+            history = new History();
+        history.add(millis);
+        histories.put(area, history);
+        return ++unsaved >= SAVE_EVERY;
+    }
+
+    // Median reload time for the area in ms, -1 if it has never been timed
+    synchronized int medianMillis(int area)
+    {
+        History history = histories.get(area);
+        return history == null ? -1 : history.median();
+    }
+
+    synchronized void load(File file)
+    {
+        histories.clear();
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                int colon = line.indexOf(':');
+                if (colon <= 0)
+                    continue;
+
+                try
+                {
+                    int area = Integer.parseInt(line.substring(0, colon));
+                    for (String sample : line.substring(colon + 1).split(","))
+                        record(area, Integer.parseInt(sample.trim()));
+                }
+                catch (NumberFormatException ignored) {}
+            }
+            unsaved = 0;
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to load reload costs", e);
+        }
+    }
+
+    void save(File file)
+    {
+        StringBuilder sb = new StringBuilder();
+        synchronized (this)
+        {
+            unsaved = 0;
+            for (Map.Entry<Integer, History> entry : histories.entrySet())
+            {
+                History history = entry.getValue();
+                sb.append(entry.getKey()).append(':');
+                // Oldest first, so a reload replays them in order
+                for (int i = 0; i < history.count; i++)
+                {
+                    int index = (history.next - history.count + i + SAMPLES) % SAMPLES;
+                    if (i > 0) sb.append(',');
+                    sb.append(history.samples[index]);
+                }
+                sb.append('\n');
+            }
+        }
+
+        try
+        {
+            file.getParentFile().mkdirs();
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+            {
+                writer.write(sb.toString());
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to save reload costs", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.terraintoggle;
+
+import net.runelite.api.GameState;
+import net.runelite.api.Scene;
+import net.runelite.api.Tile;
+import net.runelite.api.TileObject;
+import net.runelite.client.callback.RenderCallback;
+
+// Works out whether the active renderer consults RenderCallback.drawTile at all (the GPU plugin does, the
+// software renderer and 117 HD don't). While probing, a pass-through callback counts drawTile calls; if a
+// scene loads and the client runs SETTLE_TICKS client ticks without a single call, the renderer is unsupported.
+class RendererProbe
+{
+    enum State
+    {
+        UNKNOWN,
+        SUPPORTED,
+        UNSUPPORTED
+    }
+
+    // Client ticks (~1 second) to give the renderer to upload a freshly loaded scene
+    private static final int SETTLE_TICKS = 50;
+
+    private State state = State.UNKNOWN;
+    private volatile int tilesSeen;
+    private boolean sceneLoaded;
+    private int ticksSinceLoad;
+
+    // Register while probing; never hides anything
+    final RenderCallback callback = new RenderCallback() {
+        @Override
+        public boolean drawTile(Scene scene, Tile tile) {
+            tilesSeen++;
+            return true;
+        }
+
+        @Override
+        public boolean drawObject(Scene scene, TileObject object) {
+            return true;
+        }
+    };
+
+    void start()
+    {
+        state = State.UNKNOWN;
+        tilesSeen = 0;
+        sceneLoaded = false;
+        ticksSinceLoad = 0;
+    }
+
+    State getState()
+    {
+        return state;
+    }
+
+    // For other callbacks that may see the tile first
+    void tileDrawn()
+    {
+        if (state == State.UNKNOWN)
+            tilesSeen++;
+    }
+
+    void onGameStateChanged(GameState gameState)
+    {
+        if (state == State.UNKNOWN && gameState == GameState.LOADING)
+        {
+            sceneLoaded = true;
+            ticksSinceLoad = 0;
+        }
+    }
+
+    // Returns true on the tick the probe reaches a verdict
+    boolean onClientTick(GameState gameState)
+    {
+        if (state != State.UNKNOWN)
+            return false;
+
+        if (tilesSeen > 0)
+        {
+            state = State.SUPPORTED;
+            return true;
+        }
+
+        if (!sceneLoaded || gameState != GameState.LOGGED_IN || ++ticksSinceLoad < SETTLE_TICKS)
+            return false;
+
+        state = State.UNSUPPORTED;
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package com.terraintoggle;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+// Show/Hide list membership shared by every client on the machine through one memory-mapped file.
+//
+// Layout (big-endian):
+//   0   int   magic
+//   4   int   slot count
+//   8   long  version, bumped once per slot write
+//   16  int[LOG_SIZE]  slot written at each version, indexed by (version - 1) % LOG_SIZE
+//   ..  slots of {int area, int state}, open addressing on area
+//
+// A client that is fewer than LOG_SIZE versions behind re-reads only the slots in the log; anything older
+// falls back to a full read. Writers take an exclusive file lock, readers a shared one, and only when the
+// version has moved, so an idle poll is a single long read from the mapping.
+@Slf4j
+class SharedRuleStore implements AutoCloseable
+{
+    static final int SHOW = 1;
+    static final int HIDE = 2;
+    private static final int OCCUPIED = 4;  // slot has been assigned an area (state may still be empty)
+
+    interface Listener
+    {
+        // state is a combination of SHOW and HIDE, 0 if the area is in neither list
+        void areaChanged(int area, int state);
+    }
+
+    private static final int MAGIC = 0x54545253;
+    private static final int SLOTS = 4096;  // power of two
+    private static final int LOG_SIZE = 64;
+    private static final int SLOT_SIZE = 8;
+
+    private static final int VERSION_OFFSET = 8;
+    private static final int LOG_OFFSET = 16;
+    private static final int SLOT_OFFSET = LOG_OFFSET + LOG_SIZE * 4;
+    private static final int FILE_SIZE = SLOT_OFFSET + SLOTS * SLOT_SIZE;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long seenVersion;
+
+    private SharedRuleStore(RandomAccessFile file, FileChannel channel, MappedByteBuffer buffer)
+    {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static SharedRuleStore open(File path) throws IOException
+    {
+        path.getParentFile().mkdirs();
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            try (FileLock lock = channel.lock())
+            {
+                if (channel.size() < FILE_SIZE)
+                {
+                    // First client to get here lays out an empty store
+                    file.setLength(FILE_SIZE);
+                    file.seek(0);
+                    file.writeInt(MAGIC);
+                    file.writeInt(SLOTS);
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != SLOTS)
+                throw new IOException(path + " is not a terrain rule store");
+
+            return new SharedRuleStore(file, channel, buffer);
+        }
+        catch (IOException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    // Reads every area in the store
+    synchronized void readAll(Listener listener) throws IOException
+    {
+        try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true))
+        {
+            seenVersion = buffer.getLong(VERSION_OFFSET);
+            for (int slot = 0; slot < SLOTS; slot++)
+            {
+                int state = stateAt(slot);
+                if ((state & OCCUPIED) != 0)
+                    listener.areaChanged(areaAt(slot), state & (SHOW | HIDE));
+            }
+        }
+    }
+
+    // Reports areas changed since the last poll. Returns false without locking if nothing changed.
+    synchronized boolean poll(Listener listener) throws IOException
+    {
+        if (buffer.getLong(VERSION_OFFSET) == seenVersion)
+            return false;
+
+        try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true))
+        {
+            long version = buffer.getLong(VERSION_OFFSET);
+            if (version - seenVersion > LOG_SIZE)
+            {
+                // Too far behind for the change log, read everything
+                log.debug("Shared rule store moved {} versions, reloading all areas", version - seenVersion);
+                seenVersion = version;
+                for (int slot = 0; slot < SLOTS; slot++)
+                {
+                    int state = stateAt(slot);
+                    if ((state & OCCUPIED) != 0)
+                        listener.areaChanged(areaAt(slot), state & (SHOW | HIDE));
+                }
+                return true;
+            }
+
+            for (long v = seenVersion + 1; v <= version; v++)
+            {
+                int slot = buffer.getInt(LOG_OFFSET + (int) ((v - 1) % LOG_SIZE) * 4);
+                listener.areaChanged(areaAt(slot), stateAt(slot) & (SHOW | HIDE));
+            }
+            seenVersion = version;
+            return true;
+        }
+    }
+
+    // Sets an area's list membership (SHOW/HIDE bits). No-op if it already matches.
+    synchronized void put(int area, int state) throws IOException
+    {
+        try (FileLock lock = channel.lock())
+        {
+            int slot = findSlot(area);
+            if (slot == -1)
+            {
+                log.warn("Shared rule store is full, area {} not shared", area);
+                return;
+            }
+
+            int current = stateAt(slot);
+            if ((current & OCCUPIED) != 0 && (current & (SHOW | HIDE)) == state)
+                return;
+
+            int offset = SLOT_OFFSET + slot * SLOT_SIZE;
+            buffer.putInt(offset, area);
+            buffer.putInt(offset + 4, state | OCCUPIED);
+
+            // Log the slot before publishing the version that points at it
+            long version = buffer.getLong(VERSION_OFFSET) + 1;
+            buffer.putInt(LOG_OFFSET + (int) ((version - 1) % LOG_SIZE) * 4, slot);
+            buffer.putLong(VERSION_OFFSET, version);
+        }
+    }
+
+    // Slot holding the area, or the empty slot it would go in; -1 if the store is full
+    private int findSlot(int area)
+    {
+        int start = (area * 0x9E3779B9) >>> 20;  // top 12 bits, SLOTS == 1 << 12
+        for (int i = 0; i < SLOTS; i++)
+        {
+            int slot = (start + i) & (SLOTS - 1);
+            if ((stateAt(slot) & OCCUPIED) == 0 || areaAt(slot) == area)
+                return slot;
+        }
+        return -1;
+    }
+
+    private int areaAt(int slot)
+    {
+        return buffer.getInt(SLOT_OFFSET + slot * SLOT_SIZE);
+    }
+
+    private int stateAt(int slot)
+    {
+        return buffer.getInt(SLOT_OFFSET + slot * SLOT_SIZE + 4);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        buffer.force();
+        file.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.terraintoggle;
+
+import java.util.List;
+
+// A single parsed rule: "<priority> <show|hide> <field>=<value> <field>!=<value> group=<name> ..."
+// All conditions must hold for the rule to apply. A rule with no conditions applies everywhere.
+class TerrainRule
+{
+    // Location fields a rule can test, in the order they are stored in a LocationSnapshot
+    enum Field
+    {
+        REGION("region"),
+        INSTANCE("instance"),
+        ROOM("room"),
+        AREA("area"),
+        PLANE("plane");
+
+        private final String key;
+
+        Field(String key)
+        {
+            this.key = key;
+        }
+
+        static Field fromKey(String key)
+        {
+            for (Field field : values())
+            {
+                if (field.key.equalsIgnoreCase(key))
+                    return field;
+            }
+            return null;
+        }
+    }
+
+    static class Condition
+    {
+        final Field field;
+        final int value;
+        final boolean negated;
+        // Index into RegionGroups for "group=<name>" (a REGION condition), -1 for a plain value
+        final int group;
+
+        Condition(Field field, int value, boolean negated)
+        {
+            this(field, value, negated, -1);
+        }
+
+        private Condition(Field field, int value, boolean negated, int group)
+        {
+            this.field = field;
+            this.value = value;
+            this.negated = negated;
+            this.group = group;
+        }
+
+        static Condition inGroup(int group, boolean negated)
+        {
+            return new Condition(Field.REGION, -1, negated, group);
+        }
+    }
+
+    final int priority;
+    final boolean show;
+    final List<Condition> conditions;
+    // Position in the source, used to break priority ties (earlier wins) and in error messages
+    final int order;
+
+    TerrainRule(int priority, boolean show, List<Condition> conditions, int order)
+    {
+        this.priority = priority;
+        this.show = show;
+        this.conditions = conditions;
+        this.order = order;
+    }
+}
@@ -0,0 +1,493 @@
+package com.terraintoggle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parses the "Terrain Rules" config text and compiles rules into a TerrainRuleTable.
+//
+// One rule per line, '#' starts a comment:
+//   [priority] show|hide [field=value | field!=value | group=name | group!=name]...
+// e.g. "10 hide region=12850 plane!=2" or "20 show room=12345".
+// Highest priority wins, ties go to the rule written first. Priority defaults to 0.
+//
+// Region groups are defined on their own lines, in region coordinates, anywhere in the text:
+//   group <name> rect x1 y1 x2 y2
+//   group <name> poly x1 y1 x2 y2 x3 y3 ...
+//   group <name> group=<other> [group=<other>]...
+// Repeating a group name adds to it. A group can include other groups, defined before or after it.
+final class TerrainRuleCompiler
+{
+    // Upper bound on decision table cells, keeps a pathological rule set from eating the heap
+    static final int MAX_CELLS = 1 << 18;
+
+    // The Show/Hide region lists rank at this priority: rules at or above it beat the lists, rules below it don't
+    static final int LIST_PRIORITY = 0;
+
+    // Groups tested by rules are packed into a long per region while classifying
+    static final int MAX_GROUPS = 64;
+
+    private static final int REGION = TerrainRule.Field.REGION.ordinal();
+    private static final int REGION_COUNT = RegionGroups.GRID * RegionGroups.GRID;
+
+    private static final TerrainRule.Field[] FIELDS = TerrainRule.Field.values();
+
+    private TerrainRuleCompiler()
+    {
+    }
+
+    // Parses rules, adding any group definitions to groups
+    static List<TerrainRule> parse(String text, RegionGroups groups, List<String> errors)
+    {
+        List<TerrainRule> rules = new ArrayList<>();
+        if (text == null || text.isEmpty())
+            return rules;
+
+        String[] lines = text.split("\\r?\\n");
+        String[][] tokenized = new String[lines.length][];
+        for (int lineNo = 0; lineNo < lines.length; lineNo++)
+        {
+            String line = lines[lineNo];
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+            line = line.trim();
+            if (!line.isEmpty())
+                tokenized[lineNo] = line.split("[\\s,]+");
+        }
+
+        // Groups first, so rules can use groups defined further down
+        List<int[]> includes = new ArrayList<>();
+        List<Integer> includeLines = new ArrayList<>();
+        for (int lineNo = 0; lineNo < lines.length; lineNo++)
+        {
+            String[] tokens = tokenized[lineNo];
+            if (tokens != null && tokens[0].equalsIgnoreCase("group") && !isInclude(tokens))
+                parseGroup(tokens, lineNo + 1, groups, errors);
+            else if (tokens != null && tokens[0].equalsIgnoreCase("group"))
+            {
+                // Named up front, so groups made only of other groups can be included too
+                groups.define(tokens[1]);
+                includeLines.add(lineNo);
+            }
+        }
+        for (int lineNo : includeLines)
+            parseInclude(tokenized[lineNo], lineNo + 1, groups, includes, errors);
+
+        // Nested groups: merge until nothing changes, so chains and cycles resolve whatever order they are written in
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            for (int[] include : includes)
+                changed |= groups.addGroup(include[0], include[1]);
+        }
+
+        for (int lineNo = 0; lineNo < lines.length; lineNo++)
+        {
+            String[] tokens = tokenized[lineNo];
+            if (tokens == null || tokens[0].equalsIgnoreCase("group"))
+                continue;
+
+            TerrainRule rule = parseLine(tokens, lineNo + 1, groups, errors);
+            if (rule != null)
+                rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static boolean isInclude(String[] tokens)
+    {
+        return tokens.length >= 3 && tokens[2].regionMatches(true, 0, "group=", 0, 6);
+    }
+
+    // group <name> group=<other>...: collected as {group, other} pairs, merged once every group is known
+    private static void parseInclude(String[] tokens, int lineNo, RegionGroups groups, List<int[]> includes, List<String> errors)
+    {
+        List<int[]> pairs = new ArrayList<>();
+        for (int t = 2; t < tokens.length; t++)
+        {
+            if (!tokens[t].regionMatches(true, 0, "group=", 0, 6))
+            {
+                errors.add("Line " + lineNo + ": expected group=<name>, found '" + tokens[t] + "'");
+                return;
+            }
+            String other = tokens[t].substring(6);
+            int included = groups.indexOf(other);
+            if (included == -1)
+            {
+                errors.add("Line " + lineNo + ": unknown group '" + other + "'");
+                return;
+            }
+            pairs.add(new int[] {-1, included});
+        }
+
+        int group = groups.define(tokens[1]);
+        for (int[] pair : pairs)
+        {
+            pair[0] = group;
+            includes.add(pair);
+        }
+    }
+
+    private static void parseGroup(String[] tokens, int lineNo, RegionGroups groups, List<String> errors)
+    {
+        if (tokens.length < 3)
+        {
+            errors.add("Line " + lineNo + ": expected group <name> rect|poly <coordinates> or group <name> group=<other>");
+            return;
+        }
+
+        String shape = tokens[2];
+        int[] coordinates = new int[tokens.length - 3];
+        for (int i = 0; i < coordinates.length; i++)
+        {
+            if (!isInteger(tokens[i + 3]))
+            {
+                errors.add("Line " + lineNo + ": '" + tokens[i + 3] + "' is not a number");
+                return;
+            }
+            coordinates[i] = Integer.parseInt(tokens[i + 3]);
+        }
+
+        if (shape.equalsIgnoreCase("rect"))
+        {
+            if (coordinates.length != 4)
+            {
+                errors.add("Line " + lineNo + ": rect needs x1 y1 x2 y2");
+                return;
+            }
+            int group = groups.define(tokens[1]);
+            groups.addRect(group, coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+        }
+        else if (shape.equalsIgnoreCase("poly"))
+        {
+            if (coordinates.length < 6 || coordinates.length % 2 != 0)
+            {
+                errors.add("Line " + lineNo + ": poly needs at least 3 x y pairs");
+                return;
+            }
+            int[] xs = new int[coordinates.length / 2];
+            int[] ys = new int[coordinates.length / 2];
+            for (int i = 0; i < xs.length; i++)
+            {
+                xs[i] = coordinates[i * 2];
+                ys[i] = coordinates[i * 2 + 1];
+            }
+            int group = groups.define(tokens[1]);
+            groups.addPolygon(group, xs, ys);
+        }
+        else
+        {
+            errors.add("Line " + lineNo + ": expected rect or poly, found '" + shape + "'");
+        }
+    }
+
+    private static TerrainRule parseLine(String[] tokens, int lineNo, RegionGroups groups, List<String> errors)
+    {
+        int t = 0;
+
+        int priority = 0;
+        if (isInteger(tokens[t]))
+        {
+            priority = Integer.parseInt(tokens[t]);
+            t++;
+        }
+
+        if (t >= tokens.length)
+        {
+            errors.add("Line " + lineNo + ": missing show/hide");
+            return null;
+        }
+
+        boolean show;
+        if (tokens[t].equalsIgnoreCase("show"))
+            show = true;
+        else if (tokens[t].equalsIgnoreCase("hide"))
+            show = false;
+        else
+        {
+            errors.add("Line " + lineNo + ": expected show or hide, found '" + tokens[t] + "'");
+            return null;
+        }
+        t++;
+
+        List<TerrainRule.Condition> conditions = new ArrayList<>();
+        for (; t < tokens.length; t++)
+        {
+            String token = tokens[t];
+            if (token.equalsIgnoreCase("and") || token.equalsIgnoreCase("when"))
+                continue;
+
+            boolean negated = token.contains("!=");
+            int split = token.indexOf(negated ? "!=" : "=");
+            if (split <= 0)
+            {
+                errors.add("Line " + lineNo + ": expected field=value, found '" + token + "'");
+                return null;
+            }
+
+            String key = token.substring(0, split);
+            String value = token.substring(split + (negated ? 2 : 1));
+
+            if (key.equalsIgnoreCase("group"))
+            {
+                int group = groups.indexOf(value);
+                if (group == -1)
+                {
+                    errors.add("Line " + lineNo + ": unknown group '" + value + "'");
+                    return null;
+                }
+                conditions.add(TerrainRule.Condition.inGroup(group, negated));
+                continue;
+            }
+
+            TerrainRule.Field field = TerrainRule.Field.fromKey(key);
+            if (field == null)
+            {
+                errors.add("Line " + lineNo + ": unknown field '" + key + "'");
+                return null;
+            }
+            if (!isInteger(value))
+            {
+                errors.add("Line " + lineNo + ": '" + value + "' is not a number");
+                return null;
+            }
+            if (field == TerrainRule.Field.REGION && (Integer.parseInt(value) < 0 || Integer.parseInt(value) >= REGION_COUNT))
+            {
+                errors.add("Line " + lineNo + ": region " + value + " is out of range");
+                return null;
+            }
+
+            conditions.add(new TerrainRule.Condition(field, Integer.parseInt(value), negated));
+        }
+
+        return new TerrainRule(priority, show, conditions, lineNo);
+    }
+
+    // Region classes: every region ID mapped to a class such that regions in the same class are indistinguishable
+    // to the rules (same explicit value, same groups). Class 0 is "no value, no group".
+    private static class RegionClasses
+    {
+        char[] classOf;         // by region ID, null if no rule tests the region
+        int count = 1;
+        List<Integer> values = new ArrayList<>();  // explicit region of each class, -1 if none
+        List<Long> groupMasks = new ArrayList<>(); // bit g set if the class is in the g-th tested group
+    }
+
+    // Compiles the user's rules, split around LIST_PRIORITY so the Show/Hide lists can be slotted in between
+    // with TerrainRuleTable.withLists. Returns null (and adds an error) if either half needs more than MAX_CELLS.
+    static TerrainRuleTable compile(List<TerrainRule> rules, RegionGroups groups, List<String> errors)
+    {
+        List<TerrainRule> above = new ArrayList<>();
+        List<TerrainRule> below = new ArrayList<>();
+        for (TerrainRule rule : rules)
+            (rule.priority >= LIST_PRIORITY ? above : below).add(rule);
+
+        TerrainRuleTable aboveTable = compileTable(above, groups, errors);
+        if (aboveTable == null)
+            return null;
+        if (below.isEmpty())
+            return aboveTable;
+
+        TerrainRuleTable belowTable = compileTable(below, groups, errors);
+        return belowTable == null ? null : aboveTable.withBelow(belowTable);
+    }
+
+    private static TerrainRuleTable compileTable(List<TerrainRule> rules, RegionGroups groups, List<String> errors)
+    {
+        if (rules.isEmpty())
+            return TerrainRuleTable.EMPTY;
+
+        // Distinct values each non-region field is compared against, sorted for binary search
+        int[][] keys = new int[FIELDS.length][];
+        int[] dims = new int[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++)
+        {
+            TerrainRule.Field field = FIELDS[f];
+            if (f == REGION)
+            {
+                keys[f] = new int[0];
+                continue;
+            }
+            keys[f] = rules.stream()
+                    .flatMap(r -> r.conditions.stream())
+                    .filter(c -> c.field == field)
+                    .mapToInt(c -> c.value)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+            dims[f] = keys[f].length + 1;
+        }
+
+        // Groups actually tested, in bit order
+        int[] testedGroups = rules.stream()
+                .flatMap(r -> r.conditions.stream())
+                .filter(c -> c.group >= 0)
+                .mapToInt(c -> c.group)
+                .distinct()
+                .toArray();
+        if (testedGroups.length > MAX_GROUPS)
+        {
+            errors.add("Rules use more than " + MAX_GROUPS + " region groups");
+            return null;
+        }
+        int[] groupBit = new int[groups.size()];
+        for (int i = 0; i < testedGroups.length; i++)
+            groupBit[testedGroups[i]] = i;
+
+        RegionClasses regions = classifyRegions(rules, groups, testedGroups);
+        dims[REGION] = regions.count;
+
+        int[] strides = new int[FIELDS.length];
+        long total = 1;
+        for (int f = 0; f < FIELDS.length; f++)
+        {
+            strides[f] = (int) total;
+            total *= dims[f];
+            if (total > MAX_CELLS)
+            {
+                errors.add("Too many distinct values across rules (table would exceed " + MAX_CELLS + " entries)");
+                return null;
+            }
+        }
+
+        List<TerrainRule> ordered = new ArrayList<>(rules);
+        ordered.sort(Comparator.comparingInt((TerrainRule r) -> -r.priority).thenComparingInt(r -> r.order));
+
+        // accepts[rule][field][class]: does this rule's condition on the field hold for the class
+        boolean[][][] accepts = new boolean[ordered.size()][FIELDS.length][];
+        for (int r = 0; r < ordered.size(); r++)
+        {
+            for (int f = 0; f < FIELDS.length; f++)
+            {
+                boolean[] accepted = new boolean[dims[f]];
+                Arrays.fill(accepted, true);
+                accepts[r][f] = accepted;
+            }
+
+            for (TerrainRule.Condition condition : ordered.get(r).conditions)
+            {
+                int f = condition.field.ordinal();
+                boolean[] accepted = accepts[r][f];
+                for (int c = 0; c < accepted.length; c++)
+                {
+                    boolean equal;
+                    if (condition.group >= 0)
+                        equal = (regions.groupMasks.get(c) & (1L << groupBit[condition.group])) != 0;
+                    else if (f == REGION)
+                        equal = regions.values.get(c) == condition.value;
+                    else
+                        // Class 0 stands for every value no rule mentions
+                        equal = c > 0 && keys[f][c - 1] == condition.value;
+                    accepted[c] &= equal != condition.negated;
+                }
+            }
+        }
+
+        byte[] cells = new byte[(int) total];
+        int[] classes = new int[FIELDS.length];
+        for (int cell = 0; cell < cells.length; cell++)
+        {
+            for (int f = 0; f < FIELDS.length; f++)
+                classes[f] = (cell / strides[f]) % dims[f];
+
+            for (int r = 0; r < ordered.size(); r++)
+            {
+                if (matches(accepts[r], classes))
+                {
+                    cells[cell] = ordered.get(r).show ? TerrainRuleTable.SHOW : TerrainRuleTable.HIDE;
+                    break;
+                }
+            }
+        }
+
+        return new TerrainRuleTable(regions.classOf, keys, strides, cells);
+    }
+
+    private static RegionClasses classifyRegions(List<TerrainRule> rules, RegionGroups groups, int[] testedGroups)
+    {
+        RegionClasses classes = new RegionClasses();
+        classes.values.add(-1);
+        classes.groupMasks.add(0L);
+
+        boolean[] explicit = new boolean[REGION_COUNT];
+        boolean anyExplicit = false;
+        for (TerrainRule rule : rules)
+        {
+            for (TerrainRule.Condition condition : rule.conditions)
+            {
+                if (condition.field == TerrainRule.Field.REGION && condition.group < 0)
+                {
+                    explicit[condition.value] = true;
+                    anyExplicit = true;
+                }
+            }
+        }
+
+        if (!anyExplicit && testedGroups.length == 0)
+            return classes;
+
+        classes.classOf = new char[REGION_COUNT];
+        Map<Long, Integer> byMask = new HashMap<>();
+        byMask.put(0L, 0);
+        for (int region = 0; region < REGION_COUNT; region++)
+        {
+            long mask = 0;
+            for (int i = 0; i < testedGroups.length; i++)
+            {
+                if (groups.contains(testedGroups[i], region))
+                    mask |= 1L << i;
+            }
+
+            int c;
+            if (explicit[region])
+            {
+                // Named directly by a rule: a class of its own
+                c = classes.count++;
+                classes.values.add(region);
+                classes.groupMasks.add(mask);
+            }
+            else
+            {
+                Integer existing = byMask.get(mask);
+                if (existing == null)
+                {
+                    existing = classes.count++;
+                    byMask.put(mask, existing);
+                    classes.values.add(-1);
+                    classes.groupMasks.add(mask);
+                }
+                c = existing;
+            }
+            classes.classOf[region] = (char) c;
+        }
+        return classes;
+    }
+
+    private static boolean matches(boolean[][] accepts, int[] classes)
+    {
+        for (int f = 0; f < classes.length; f++)
+        {
+            if (!accepts[f][classes[f]])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isInteger(String s)
+    {
+        try
+        {
+            Integer.parseInt(s);
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+}
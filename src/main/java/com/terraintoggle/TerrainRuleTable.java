@@ -0,0 +1,111 @@
+package com.terraintoggle;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compiled form of a rule set: a flat decision table indexed by one class per location field.
+// The region maps to its class through a table covering every region ID (groups are pre-rasterised into it).
+// Other fields map to class 0 ("not mentioned by any rule") or 1 + the value's index in that field's sorted key list.
+// An evaluation is one array read for the region, one small binary search per other field used by the rules,
+// and a single table read, however many rules are loaded.
+//
+// The Show/Hide lists are not part of the table: they sit in a hash lookup by area between the rules at or above
+// TerrainRuleCompiler.LIST_PRIORITY (this table) and the rules below it (a second table), so list size never
+// grows the table and editing a list doesn't recompile anything.
+class TerrainRuleTable
+{
+    static final byte NO_MATCH = 0;
+    static final byte SHOW = 1;
+    static final byte HIDE = 2;
+
+    private static final TerrainRule.Field[] FIELDS = TerrainRule.Field.values();
+
+    private static final int REGION = TerrainRule.Field.REGION.ordinal();
+
+    static final TerrainRuleTable EMPTY = new TerrainRuleTable(null, new int[FIELDS.length][0], new int[FIELDS.length], new byte[] {NO_MATCH});
+
+    private final char[] regionClasses;  // null if no rule tests the region
+    private final int[][] keys;          // the region's entry is unused
+    private final int[] strides;
+    private final byte[] cells;
+    private final Map<Integer, Byte> listDecisions;  // Show/Hide lists by area
+    private final TerrainRuleTable below;            // rules below the lists, null if none
+
+    TerrainRuleTable(char[] regionClasses, int[][] keys, int[] strides, byte[] cells)
+    {
+        this(regionClasses, keys, strides, cells, Collections.emptyMap(), null);
+    }
+
+    private TerrainRuleTable(char[] regionClasses, int[][] keys, int[] strides, byte[] cells,
+                             Map<Integer, Byte> listDecisions, TerrainRuleTable below)
+    {
+        this.regionClasses = regionClasses;
+        this.keys = keys;
+        this.strides = strides;
+        this.cells = cells;
+        this.listDecisions = listDecisions;
+        this.below = below;
+    }
+
+    // This table with the rules of another consulted after it (and after the lists)
+    TerrainRuleTable withBelow(TerrainRuleTable below)
+    {
+        return new TerrainRuleTable(regionClasses, keys, strides, cells, listDecisions, below);
+    }
+
+    // This table with the given Show/Hide lists. An area in both lists is shown, as it always has been.
+    TerrainRuleTable withLists(Collection<Integer> showAreas, Collection<Integer> hideAreas)
+    {
+        Map<Integer, Byte> decisions = new HashMap<>(showAreas.size() + hideAreas.size());
+        for (int area : hideAreas)
+            decisions.put(area, HIDE);
+        for (int area : showAreas)
+            decisions.put(area, SHOW);
+        return new TerrainRuleTable(regionClasses, keys, strides, cells, decisions, below);
+    }
+
+    byte evaluate(LocationSnapshot snapshot)
+    {
+        byte decision = lookup(snapshot);
+        if (decision != NO_MATCH)
+            return decision;
+
+        Byte listed = listDecisions.get(snapshot.area);
+        if (listed != null)
+            return listed;
+
+        return below != null ? below.evaluate(snapshot) : NO_MATCH;
+    }
+
+    private byte lookup(LocationSnapshot snapshot)
+    {
+        int index = 0;
+        if (regionClasses != null)
+        {
+            int region = snapshot.region;
+            if (region >= 0 && region < regionClasses.length)
+                index += regionClasses[region] * strides[REGION];
+        }
+
+        for (int f = 0; f < FIELDS.length; f++)
+        {
+            int[] fieldKeys = keys[f];
+            if (fieldKeys.length == 0)
+                continue;
+
+            int i = Arrays.binarySearch(fieldKeys, snapshot.get(FIELDS[f]));
+            if (i >= 0)
+                index += (i + 1) * strides[f];
+        }
+        return cells[index];
+    }
+
+    // Decision table cells, both tables together
+    int size()
+    {
+        return cells.length + (below != null ? below.size() : 0);
+    }
+}
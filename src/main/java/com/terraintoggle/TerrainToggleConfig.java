@@ -29,6 +29,8 @@ import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
 import net.runelite.client.config.ConfigSection;
 import net.runelite.client.config.Keybind;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
 @ConfigGroup(TerrainToggleConfig.GROUP)
 public interface TerrainToggleConfig extends Config
@@ -50,7 +52,7 @@ public interface TerrainToggleConfig extends Config
     @ConfigItem(
             keyName = "enableHotkey",
             name = "Enable Hotkey",
-            description = "Allow the hotkey to toggle terrain on/off. (Controls Display Terrain Toggle)",
+            description = "Allow the hotkey to toggle terrain on/off for this session. Type ::terrain save to keep the result in Display Terrain.",
             position = 2
     )
     default boolean enableHotkey() { return false; }
@@ -63,11 +65,19 @@ public interface TerrainToggleConfig extends Config
     )
     default Keybind toggleTerrainHotkey() { return Keybind.NOT_SET; }
 
+    @ConfigItem(
+            keyName = "hotkeyMode",
+            name = "Hotkey Mode",
+            description = "Toggle: each press flips terrain. Hold: terrain flips while the hotkey is held and flips back on release.",
+            position = 4
+    )
+    default HotkeyMode hotkeyMode() { return HotkeyMode.Toggle; }
+
     @ConfigItem(
             keyName = "enableRegionToggle",
             name = "Enable Region Auto-Toggle",
             description = "Automatically apply terrain rules based on selected regions.",
-            position = 4
+            position = 5
     )
     default boolean enableRegionToggle() { return false; }
 
@@ -75,7 +85,7 @@ public interface TerrainToggleConfig extends Config
             keyName = "enableRightClickRegion",
             name = "Enable Region Right-Click Menu",
             description = "Allows Shift-Right-Click to add/remove regions.",
-            position = 5
+            position = 6
     )
     default boolean enableRightClickRegion() { return false; }
 
@@ -83,10 +93,20 @@ public interface TerrainToggleConfig extends Config
             keyName = "notificationMode",
             name = "Notification Mode",
             description = "Choose how terrain toggle status is shown",
-            position = 6
+            position = 7
     )
     default NotificationMode notificationMode() { return NotificationMode.None; }
 
+    @ConfigItem(
+            keyName = "planeCulling",
+            name = "Plane Culling",
+            description = "Hide terrain on the floors above and/or below the one you are standing on.<br>"
+                    + "Most stairs and ladders don't load a new scene, so changing floor forces a scene reload (a brief freeze).<br>"
+                    + "These are limited to one every few seconds and follow Defer Slow Reloads in slow areas.",
+            position = 8
+    )
+    default PlaneCulling planeCulling() { return PlaneCulling.Off; }
+
     // -----------------------------------------------------
     // REGION DATA / DEBUG SUBMENU
     // -----------------------------------------------------
@@ -126,6 +146,63 @@ public interface TerrainToggleConfig extends Config
     )
     default boolean showRegionInOverlay() { return false; }
 
+    @ConfigItem(
+            keyName = "rules",
+            name = "Terrain Rules",
+            description = "One rule per line: [priority] show|hide field=value field!=value ...<br>"
+                    + "Fields: region, instance, room, area, plane. Highest priority wins, '#' starts a comment.<br>"
+                    + "e.g. '10 hide region=12850 plane!=2'. The Show/Hide lists apply at priority 0.<br>"
+                    + "Region groups: 'group name rect x1 y1 x2 y2' or 'group name poly x1 y1 x2 y2 x3 y3 ...' "
+                    + "in region coordinates, or 'group name group=other ...' to nest groups, then 'group=name' in a rule.",
+            position = 103,
+            section = regionDataSection
+    )
+    default String rules() { return ""; }
+
+    @ConfigItem(
+            keyName = "enableTrace",
+            name = "Record Event Trace",
+            description = "Keep a trace of the last 1024 terrain changes, hotkey presses, menu edits and reloads.<br>"
+                    + "Type ::terrain trace to save it to .runelite/terrain-toggle.",
+            position = 104,
+            section = regionDataSection
+    )
+    default boolean enableTrace() { return true; }
+
+    @ConfigItem(
+            keyName = "useSharedRuleStore",
+            name = "Share Regions Between Clients",
+            description = "Keep the Show/Hide region lists in a file shared by every client on this computer,<br>"
+                    + "so a Shift-Right-Click edit in one client applies to all of them within a tick.",
+            position = 105,
+            section = regionDataSection
+    )
+    default boolean useSharedRuleStore() { return false; }
+
+    @Range(min = 1, max = 100)
+    @Units(Units.PERCENT)
+    @ConfigItem(
+            keyName = "instanceMatchThreshold",
+            name = "Instance Match Threshold",
+            description = "How many template chunks an instance must share with a listed instance to count as the same one.<br>"
+                    + "Lower it if randomised layouts (ToA paths, CoX rooms) lose their rules.",
+            position = 106,
+            section = regionDataSection
+    )
+    default int instanceMatchThreshold() { return 70; }
+
+    @Range(min = 0, max = 10000)
+    @Units(Units.MILLISECONDS)
+    @ConfigItem(
+            keyName = "reloadDeferThreshold",
+            name = "Defer Slow Reloads",
+            description = "Region auto-toggles in areas whose scene reloads typically take longer than this<br>"
+                    + "wait for the next natural scene load instead of freezing the client. 0 always reloads.",
+            position = 107,
+            section = regionDataSection
+    )
+    default int reloadDeferThreshold() { return 400; }
+
     enum NotificationMode
     {
         None,
@@ -133,4 +210,18 @@ public interface TerrainToggleConfig extends Config
         Overlay,
         Both
     }
+
+    enum HotkeyMode
+    {
+        Toggle,
+        Hold
+    }
+
+    enum PlaneCulling
+    {
+        Off,
+        Above,
+        Below,
+        Both
+    }
 }
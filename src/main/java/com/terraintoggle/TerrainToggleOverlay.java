@@ -54,13 +54,29 @@ public class TerrainToggleOverlay extends Overlay {
         // === Hotkey Mode ===
         panelComponent.getChildren().add(createLineComponent("Hotkey Mode", plugin.isHotkeyEnabled() ? "ON" : "OFF", plugin.isHotkeyEnabled()));
 
+        // === Hotkey change not yet saved to Display Terrain ===
+        if (plugin.hasSessionOverride()) {
+            panelComponent.getChildren().add(createLineComponent("Unsaved", "::terrain save", false));
+        }
+
         // === Region Mode ===
         panelComponent.getChildren().add(createLineComponent("Region Mode", plugin.isRegionToggleEnabled() ? "ON" : "OFF", plugin.isRegionToggleEnabled()));
 
         // === Current Region ID ===
         int currentRegion = plugin.getCurrentAreaId();
         if (currentRegion != -1 && plugin.getConfig().showRegionInOverlay()) {
-            panelComponent.getChildren().add(createLineComponent("Current Region", String.valueOf(currentRegion), true));
+            panelComponent.getChildren().add(createLineComponent("Current Region", plugin.getRegionLabel(currentRegion), true));
+        }
+
+        // === Reload cost in this area (debug) ===
+        if (plugin.getConfig().showRegionInOverlay()) {
+            int reloadCost = plugin.getReloadCost();
+            int threshold = plugin.getConfig().reloadDeferThreshold();
+            panelComponent.getChildren().add(createLineComponent("Reload Cost", reloadCost < 0 ? "-" : reloadCost + " ms",
+                    threshold <= 0 || reloadCost <= threshold));
+        }
+        if (plugin.isReloadDeferred()) {
+            panelComponent.getChildren().add(createLineComponent("Reload", "On next load", false));
         }
 
         // === Highlight if in Selected Region ===
@@ -68,6 +84,17 @@ public class TerrainToggleOverlay extends Overlay {
             panelComponent.getChildren().add(createLineComponent("In Listed Region", "Yes", true));
         }
 
+        // === Renderer that ignores the plugin ===
+        if (!plugin.isRendererSupported()) {
+            panelComponent.getChildren().add(createLineComponent("Renderer", "Unsupported", false));
+        }
+
+        // === Terrain Rules that failed to compile ===
+        int ruleErrors = plugin.getRuleErrorCount();
+        if (ruleErrors > 0) {
+            panelComponent.getChildren().add(createLineComponent("Rule Errors", String.valueOf(ruleErrors), false));
+        }
+
         // Set a flexible width for the panel to allow resizing
         panelComponent.setPreferredSize(new Dimension(INITIAL_WIDTH, panelComponent.getPreferredSize().height));
 
@@ -30,17 +30,25 @@ import com.google.inject.Provides;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.ChatMessageType;
+import net.runelite.api.coords.LocalPoint;
 import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ClientTick;
+import net.runelite.api.events.CommandExecuted;
+import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.events.MenuEntryAdded;
 import net.runelite.api.events.MenuOptionClicked;
 import net.runelite.api.MenuAction;
 import net.runelite.api.MenuEntry;
+import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.callback.RenderCallback;
 import net.runelite.client.callback.RenderCallbackManager;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ClientShutdown;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.PluginChanged;
 import net.runelite.client.input.KeyListener;
 import net.runelite.client.input.KeyManager;
 import net.runelite.client.plugins.Plugin;
@@ -50,9 +58,17 @@ import net.runelite.client.ui.overlay.components.TitleComponent;
 
 import javax.inject.Inject;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Slf4j
 @PluginDescriptor(
@@ -62,6 +78,9 @@ import java.util.Arrays;
 )
 public class TerrainTogglePlugin extends Plugin implements KeyListener {
 
+    // Local files (traces, shared rule store) live here
+    static final File DATA_DIR = new File(RuneLite.RUNELITE_DIR, "terrain-toggle");
+
     @javax.inject.Inject private Client client;
     @javax.inject.Inject private ClientThread clientThread;
     @javax.inject.Inject private TerrainToggleConfig config;
@@ -70,18 +89,71 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
     @javax.inject.Inject private OverlayManager overlayManager;
     @javax.inject.Inject private TerrainToggleOverlay overlay;
     @javax.inject.Inject private RenderCallbackManager renderCallbackManager;
+    @javax.inject.Inject private TerrainTraceRecorder traceRecorder;
+    @javax.inject.Inject private RegionAtlas regionAtlas;
+    @javax.inject.Inject private ScheduledExecutorService executor;
 
     private boolean terrainVisible = true;
+    private boolean filterRegistered = false;
+    private final RendererProbe rendererProbe = new RendererProbe();
+    private boolean probeRegistered = false;
+    private boolean unsupportedNotified = false;
     private boolean consumeKeys = false;
     private final Set<Integer> showRegions = new HashSet<>();
     private final Set<Integer> hideRegions = new HashSet<>();
     private int lastRegion = -1;
+    private volatile int currentArea = -1;  // area seen by the last evaluation, readable off the client thread
+
+    // Packed plane/chunk of the player at the last evaluation; rules are only re-evaluated when it changes
+    // or something marks the evaluation dirty (config, rules, shared store, renderer)
+    private int lastLocationKey = -1;
+    private volatile boolean evaluationDirty = true;
     private final Set<Integer> regions = new HashSet<>();
 
+    // Terrain Rules: parsed and compiled from config, then combined with the Show/Hide lists
+    private List<TerrainRule> userRules = Collections.emptyList();
+    private RegionGroups userGroups = new RegionGroups();
+    private List<String> ruleErrors = Collections.emptyList();
+    private TerrainRuleTable compiledRules = TerrainRuleTable.EMPTY;  // user rules only
+    private volatile TerrainRuleTable ruleTable = TerrainRuleTable.EMPTY;
+
+    // Show/Hide lists shared with other clients on this machine, null unless enabled
+    private SharedRuleStore sharedStore;
+
+    // Saved instances, matched by template chunk similarity. The current instance's ID is resolved once per scene load.
+    private final InstanceMatcher instanceMatcher = new InstanceMatcher();
+    private int[] instanceSignature;
+    private int cachedInstanceId = -1;
+    private boolean instanceIdValid = false;
+
+    // How long our forced reloads take per area, used to hold back automatic toggles in expensive areas
+    private final ReloadCostModel reloadCosts = new ReloadCostModel();
+    private static final String RELOAD_COSTS_FILE = "reload-costs.txt";
+    private long reloadStartNanos = 0;
+    private int reloadArea = -1;
+    private boolean reloadDeferred = false;  // terrain state changed but waits for the next natural scene load
+
+    // Plane culling: render levels outside [minVisibleLevel, maxVisibleLevel] are hidden. The range follows the
+    // player's plane and is refreshed once per client tick and at each scene load, so drawTile only compares ints.
+    private TerrainToggleConfig.PlaneCulling planeCulling = TerrainToggleConfig.PlaneCulling.Off;
+    private volatile int minVisibleLevel = 0;
+    private volatile int maxVisibleLevel = Constants.MAX_Z - 1;
+
+    // Range the current scene was uploaded with. Most stairs change plane without loading a scene, so when the
+    // range moves away from this the scene needs a forced reload; those go through the same deferral as region
+    // toggles and are spaced at least PLANE_RELOAD_COOLDOWN_MILLIS apart, so a run of stairs costs one freeze.
+    private static final long PLANE_RELOAD_COOLDOWN_MILLIS = 3000;
+    private int loadedMinLevel = 0;
+    private int loadedMaxLevel = Constants.MAX_Z - 1;
+    private long lastPlaneReloadNanos = 0;
+
     private final RenderCallback TERRAIN_FILTER = new RenderCallback() {
         @Override
         public boolean drawTile(Scene scene, Tile tile) {
-            return terrainVisible;
+            rendererProbe.tileDrawn();
+            // Render level rather than plane, so bridges stay with the floor they are walked on
+            int level = tile.getRenderLevel();
+            return terrainVisible && level >= minVisibleLevel && level <= maxVisibleLevel;
         }
 
         @Override
@@ -100,20 +172,41 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
     protected void startUp() {
         log.info("TerrainToggle started");
 
+        sessionTerrain = null;
+        // A hotkey held while the plugin was stopped never sends us its release
+        peekActive = false;
+        peekRestore = null;
+        // RuneLite reuses the plugin instance, and a reload forced by shutDown() never reported back
+        reloadStartNanos = 0;
+        reloadDeferred = false;
         terrainVisible = config.enableTerrain();
+        planeCulling = config.planeCulling();
+        // The scene on screen was uploaded without us
+        loadedMinLevel = 0;
+        loadedMaxLevel = Constants.MAX_Z - 1;
+        traceRecorder.setEnabled(config.enableTrace());
+        instanceMatcher.load(configManager.getConfiguration(TerrainToggleConfig.GROUP, "instanceSignatures"));
+        instanceIdValid = false;
+        lastLocationKey = -1;
+        evaluationDirty = true;
+        executor.execute(() -> reloadCosts.load(new File(DATA_DIR, RELOAD_COSTS_FILE)));
         keyManager.registerKeyListener(this);
 
         // Register overlay
         overlayManager.add(overlay);
 
+        // Only hook the renderer (and reload the scene) if something is actually hidden
         clientThread.invoke(() -> {
-            renderCallbackManager.register(TERRAIN_FILTER);
-            if (client.getGameState() == GameState.LOGGED_IN)
-                client.setGameState(GameState.LOADING);
+            startRendererProbe();
+            updateVisibleLevels();
+            if (updateRenderCallback() && client.getGameState() == GameState.LOGGED_IN)
+                reloadScene("Plugin started");
         });
 
         // Load regions dynamically
         updateRegionLists();  // Dynamically load the region lists on plugin start
+        clientThread.invoke(this::parseRules);
+        clientThread.invoke(this::openSharedStore);
     }
 
 
@@ -124,12 +217,118 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         log.info("TerrainToggle stopped");
 
         keyManager.unregisterKeyListener(this);
+        peekActive = false;
+        peekRestore = null;
         overlayManager.remove(overlay);
+        clientThread.invoke(this::closeSharedStore);
+        executor.execute(() -> reloadCosts.save(new File(DATA_DIR, RELOAD_COSTS_FILE)));
 
+        // Only reload if the scene was uploaded with hidden tiles
         clientThread.invoke(() -> {
+            stopRendererProbe();
+            terrainVisible = true;
+            planeCulling = TerrainToggleConfig.PlaneCulling.Off;
+            updateVisibleLevels();
+            if (updateRenderCallback() && client.getGameState() == GameState.LOGGED_IN)
+                reloadScene("Plugin stopped");
+        });
+    }
+
+    // Keep TERRAIN_FILTER registered only while it can hide a tile, so an idle plugin costs nothing per tile.
+    // Returns true if the registration changed (and the scene needs re-uploading to reflect it).
+    private boolean updateRenderCallback()
+    {
+        boolean needed = (!terrainVisible || planeCulling != TerrainToggleConfig.PlaneCulling.Off)
+                && rendererProbe.getState() != RendererProbe.State.UNSUPPORTED;
+        if (needed == filterRegistered)
+            return false;
+
+        if (needed)
+            renderCallbackManager.register(TERRAIN_FILTER);
+        else
             renderCallbackManager.unregister(TERRAIN_FILTER);
-            if (client.getGameState() == GameState.LOGGED_IN)
-                client.setGameState(GameState.LOADING);
+
+        filterRegistered = needed;
+        return true;
+    }
+
+    // Re-upload the scene so drawTile is asked again for every tile
+    private void reloadScene(String reason)
+    {
+        // Pointless if the renderer never asks us about tiles
+        if (rendererProbe.getState() == RendererProbe.State.UNSUPPORTED)
+            return;
+
+        traceRecorder.record(TerrainTraceRecorder.Type.RELOAD, reason, currentArea, terrainVisible);
+        reloadStartNanos = System.nanoTime();
+        reloadArea = currentArea;
+        client.setGameState(GameState.LOADING);
+    }
+
+
+    // ===== Renderer capability probe =====
+    private void startRendererProbe()
+    {
+        rendererProbe.start();
+        if (!probeRegistered)
+        {
+            renderCallbackManager.register(rendererProbe.callback);
+            probeRegistered = true;
+        }
+    }
+
+    private void stopRendererProbe()
+    {
+        if (probeRegistered)
+        {
+            renderCallbackManager.unregister(rendererProbe.callback);
+            probeRegistered = false;
+        }
+    }
+
+    @Subscribe
+    public void onClientTick(ClientTick tick)
+    {
+        if (rendererProbe.onClientTick(client.getGameState()))
+            onRendererProbed();
+
+        checkLocation();
+        followPlane();
+    }
+
+    private void onRendererProbed()
+    {
+        stopRendererProbe();
+        if (rendererProbe.getState() == RendererProbe.State.SUPPORTED)
+        {
+            log.debug("Renderer supports drawTile");
+            evaluationDirty = true;
+            return;
+        }
+
+        // Nothing we register has any effect, so drop the filter (no reload needed, nothing was hidden)
+        log.info("Renderer doesn't call drawTile, Terrain Toggle is idle until plugins change");
+        updateRenderCallback();
+        if (!unsupportedNotified)
+        {
+            unsupportedNotified = true;
+            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                    "<col=00FFFF>[Terrain Toggle]</col> <col=ff0000>The active renderer can't hide terrain, enable the GPU plugin to use Terrain Toggle</col>", null);
+        }
+    }
+
+    @Subscribe
+    public void onPluginChanged(PluginChanged event)
+    {
+        if (event.getPlugin() == this)
+            return;
+
+        // The renderer may have changed, probe again and reapply the current state if we had gone idle
+        clientThread.invoke(() -> {
+            startRendererProbe();
+            evaluationDirty = true;
+            if (updateRenderCallback() && client.getGameState() == GameState.LOGGED_IN)
+                reloadScene("Renderer changed");
         });
     }
 
@@ -180,6 +379,10 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         if (!client.isInInstancedRegion())
             return getCanonicalRegionId(); // normal world region
 
+        // Template chunks only change on a scene load
+        if (instanceIdValid)
+            return cachedInstanceId;
+
         int[][][] chunks = client.getInstanceTemplateChunks();
         if (chunks == null)
             return -1;
@@ -203,47 +406,194 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         }
 
         // Ensure the ID is positive and within a reasonable range
-        return (hash & 0x7FFFFFFF);
+        int exactId = hash & 0x7FFFFFFF;
+
+        // Prefer a saved instance with mostly the same chunks, so layout variations keep their rules
+        instanceSignature = InstanceMatcher.signature(chunks);
+        int matchedId = instanceSignature == null ? -1
+                : instanceMatcher.match(instanceSignature, config.instanceMatchThreshold() / 100.0);
+        int id = matchedId != -1 ? matchedId : exactId;
+
+        if (client.getGameState() == GameState.LOGGED_IN)
+        {
+            cachedInstanceId = id;
+            instanceIdValid = true;
+        }
+        return id;
+    }
+
+
+
+
+
+
+
+    // Everything the rule engine can test, read once per evaluation
+    private LocationSnapshot captureLocation()
+    {
+        Player p = client.getLocalPlayer();
+        if (p == null)
+            return LocationSnapshot.NONE;
+
+        WorldPoint wp = p.getWorldLocation();
+        if (wp == null)
+            return LocationSnapshot.NONE;
+
+        int region = getCanonicalRegionId();
+        if (!client.isInInstancedRegion())
+            return new LocationSnapshot(region, -1, -1, region, wp.getPlane());
+
+        int instance = getStableInstanceId();
+        boolean raid = isRaid();
+        int room = raid ? getRaidRoomId() : -1;
+        int area = raid ? room : instance;  // same as getCurrentAreaId()
+        return new LocationSnapshot(region, instance, room, area, wp.getPlane());
     }
 
+    @Subscribe
+    public void onGameStateChanged(GameStateChanged event)
+    {
+        // New scene, new template chunks. The packed location key can come out the same in a different scene
+        // (two instances with the same base, player on the same tile), so always re-evaluate after a load.
+        if (event.getGameState() == GameState.LOADING)
+        {
+            instanceIdValid = false;
+            evaluationDirty = true;
+        }
 
+        rendererProbe.onGameStateChanged(event.getGameState());
 
+        // Any scene load picks up the current terrain state, and the plane the load puts the player on
+        if (event.getGameState() == GameState.LOADING)
+        {
+            reloadDeferred = false;
+            updateVisibleLevels();
+            loadedMinLevel = minVisibleLevel;
+            loadedMaxLevel = maxVisibleLevel;
+        }
 
+        // A forced reload that ends anywhere but back in game (login screen, hopping, lost connection) isn't a timing
+        if (event.getGameState() != GameState.LOADING && event.getGameState() != GameState.LOGGED_IN)
+            reloadStartNanos = 0;
 
+        // Time the reloads we forced
+        if (event.getGameState() == GameState.LOGGED_IN && reloadStartNanos != 0)
+        {
+            int millis = (int) ((System.nanoTime() - reloadStartNanos) / 1_000_000);
+            if (reloadCosts.record(reloadArea, millis))
+                executor.execute(() -> reloadCosts.save(new File(DATA_DIR, RELOAD_COSTS_FILE)));
+            log.debug("Reload in area {} took {} ms", reloadArea, millis);
+            reloadStartNanos = 0;
+        }
+    }
 
+    // RuneLite doesn't stop plugins on exit, so shutDown() alone would lose the session's reload timings
+    @Subscribe
+    public void onClientShutdown(ClientShutdown event)
+    {
+        reloadCosts.save(new File(DATA_DIR, RELOAD_COSTS_FILE));
+    }
 
     @Subscribe
     public void onGameTick(GameTick tick) {
-        if (client.getLocalPlayer() == null)
+        pollSharedStore();
+    }
+
+    // Called every client tick. In the steady state this is a packed plane/chunk compare; the rules only
+    // run again when the player crosses into another chunk or plane, or after a scene load, so a region change is
+    // picked up on the next frame instead of the next game tick.
+    private void checkLocation()
+    {
+        if (client.getGameState() != GameState.LOGGED_IN)
+            return;
+
+        Player p = client.getLocalPlayer();
+        if (p == null)
+            return;
+
+        LocalPoint lp = p.getLocalLocation();
+        if (lp == null)
+            return;
+
+        int chunkX = (client.getBaseX() + (lp.getX() >> 7)) >> 3;
+        int chunkY = (client.getBaseY() + (lp.getY() >> 7)) >> 3;
+        int key = (client.getPlane() << 28) | (chunkX << 14) | chunkY;
+        if (key == lastLocationKey && !evaluationDirty)
+            return;
+
+        lastLocationKey = key;
+        evaluationDirty = false;
+        updateVisibleLevels();
+        evaluateTerrain();
+    }
+
+    // Climbing stairs or a ladder without a scene load: re-upload so the culled floors follow the player.
+    // Checked every client tick, since a change held back by the cooldown has to go out once it expires.
+    private void followPlane()
+    {
+        if (!filterRegistered || (minVisibleLevel == loadedMinLevel && maxVisibleLevel == loadedMaxLevel))
+            return;
+
+        // A load underway (the transition itself, or one evaluateTerrain forced) or already deferred picks it up
+        if (reloadDeferred || reloadStartNanos != 0 || client.getGameState() != GameState.LOGGED_IN)
+            return;
+
+        int threshold = config.reloadDeferThreshold();
+        if (threshold > 0 && reloadCosts.medianMillis(currentArea) > threshold)
+        {
+            reloadDeferred = true;
+            traceRecorder.record(TerrainTraceRecorder.Type.RELOAD, "Plane change deferred", currentArea, terrainVisible);
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (lastPlaneReloadNanos != 0 && now - lastPlaneReloadNanos < PLANE_RELOAD_COOLDOWN_MILLIS * 1_000_000)
+            return;
+
+        lastPlaneReloadNanos = now;
+        reloadScene("Plane changed");
+    }
+
+    // Recompute the render levels plane culling keeps visible. Returns true if they changed.
+    private boolean updateVisibleLevels()
+    {
+        int plane = client.getPlane();
+        boolean cullAbove = planeCulling == TerrainToggleConfig.PlaneCulling.Above || planeCulling == TerrainToggleConfig.PlaneCulling.Both;
+        boolean cullBelow = planeCulling == TerrainToggleConfig.PlaneCulling.Below || planeCulling == TerrainToggleConfig.PlaneCulling.Both;
+        int min = cullBelow ? plane : 0;
+        int max = cullAbove ? plane : Constants.MAX_Z - 1;
+        if (min == minVisibleLevel && max == maxVisibleLevel)
+            return false;
+
+        minVisibleLevel = min;
+        maxVisibleLevel = max;
+        return true;
+    }
+
+    private void evaluateTerrain() {
+        if (client.getLocalPlayer() == null || rendererProbe.getState() == RendererProbe.State.UNSUPPORTED)
             return;
 
-        int region = client.isInInstancedRegion()
-                ? getStableInstanceId()
-                : getCanonicalRegionId();
+        LocationSnapshot location = captureLocation();
+        int region = location.area;
+        currentArea = region;
         boolean newTerrainVisible = terrainVisible;  // Assume terrain visibility remains the same
         String changeReason = "";  // Initialize with an empty reason
 
         // Only apply region logic if region toggle is enabled
         if (config.enableRegionToggle()) {
-            // Check if the player is in a show region
-            if (showRegions.contains(region)) {
-                newTerrainVisible = true;  // Show terrain if in a show region
-                if (lastRegion != region) {
-                    changeReason = "Region entered";  // Simple change reason when entering a show region
-                    lastRegion = region;
-                }
-            }
-            // Check if the player is in a hide region
-            else if (hideRegions.contains(region)) {
-                newTerrainVisible = false;  // Hide terrain if in a hide region
+            // Highest priority matching rule (Terrain Rules, Show list, Hide list) decides
+            byte decision = ruleTable.evaluate(location);
+            if (decision != TerrainRuleTable.NO_MATCH) {
+                newTerrainVisible = decision == TerrainRuleTable.SHOW;
                 if (lastRegion != region) {
-                    changeReason = "Region entered";  // Simple change reason when entering a hide region
+                    changeReason = "Region entered";  // Simple change reason when entering a ruled region
                     lastRegion = region;
                 }
             }
             else {
-                // Not in any region list, fallback to master toggle behavior
-                newTerrainVisible = config.enableTerrain();  // Use master toggle
+                // No rule applies, fallback to master toggle behavior
+                newTerrainVisible = isMasterTerrainEnabled();  // Use master toggle
                 if (lastRegion != -1) {
                     changeReason = "Region left";  // Only trigger when leaving a region
                     lastRegion = -1;
@@ -252,13 +602,18 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         }
         // If region toggle is not enabled, fall back to master toggle (ignore region-based behavior)
         else {
-            newTerrainVisible = config.enableTerrain();  // Master toggle controls terrain visibility
+            newTerrainVisible = isMasterTerrainEnabled();  // Master toggle controls terrain visibility
+        }
+
+        // Region transitions that don't change anything are still worth having in the trace
+        if (terrainVisible == newTerrainVisible && !changeReason.isEmpty()) {
+            traceRecorder.record(TerrainTraceRecorder.Type.REGION, changeReason, region, terrainVisible);
         }
 
         // Only trigger a reload if terrain visibility has actually changed
         if (terrainVisible != newTerrainVisible) {
             terrainVisible = newTerrainVisible;
-            client.setGameState(GameState.LOADING);  // Trigger a game state change to reflect the terrain change
+            boolean regionTriggered = !changeReason.isEmpty();
 
             // **Text notification**
             TerrainToggleConfig.NotificationMode mode = config.notificationMode();
@@ -274,6 +629,19 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
                 }
             }
 
+            traceRecorder.record(TerrainTraceRecorder.Type.DECISION, changeReason, region, terrainVisible);
+            updateRenderCallback();
+
+            // Automatic toggles in areas known to reload slowly wait for the next natural scene load instead
+            int threshold = config.reloadDeferThreshold();
+            if (regionTriggered && threshold > 0 && reloadCosts.medianMillis(region) > threshold) {
+                reloadDeferred = true;
+                changeReason = changeReason + ", on next load";
+                traceRecorder.record(TerrainTraceRecorder.Type.RELOAD, "Deferred", region, terrainVisible);
+            } else {
+                reloadScene("Visibility changed");  // Trigger a game state change to reflect the terrain change
+            }
+
             // **Text notification** - show chat message based on terrain visibility and change reason
             if (mode == TerrainToggleConfig.NotificationMode.Text || mode == TerrainToggleConfig.NotificationMode.Both) {
                 String message = terrainVisible
@@ -292,6 +660,135 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
 
 
 
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event)
+    {
+        if (!TerrainToggleConfig.GROUP.equals(event.getGroup()))
+            return;
+
+        // Master toggle, region mode, lists... anything here can change the outcome
+        evaluationDirty = true;
+
+        switch (event.getKey())
+        {
+            case "rules":
+                clientThread.invoke(this::parseRules);
+                break;
+            case "showRegions":
+            case "hideRegions":
+                clientThread.invoke(() -> {
+                    // Apply only what this edit changed. The sets can also hold areas received from other clients
+                    // that aren't in the config, and rebuilding from the config would drop (and unpublish) them.
+                    Set<Integer> list = "showRegions".equals(event.getKey()) ? showRegions : hideRegions;
+                    Set<Integer> before = parseRegionCsv(event.getOldValue());
+                    Set<Integer> after = parseRegionCsv(event.getNewValue());
+                    Set<Integer> changed = new HashSet<>();
+                    for (int area : before) {
+                        if (!after.contains(area) && list.remove(area))
+                            changed.add(area);
+                    }
+                    for (int area : after) {
+                        if (!before.contains(area) && list.add(area))
+                            changed.add(area);
+                    }
+                    if (changed.isEmpty())
+                        return;
+
+                    applyRegionLists();
+                    // Hand anything edited in the config panel on to the other clients
+                    changed.forEach(this::publishShared);
+                });
+                break;
+            case "useSharedRuleStore":
+                clientThread.invoke(this::openSharedStore);
+                break;
+            case "instanceMatchThreshold":
+                clientThread.invoke(() -> { instanceIdValid = false; });
+                break;
+            case "enableTerrain":
+                // An explicit setting replaces whatever the hotkey did this session, including a peek in progress
+                sessionTerrain = null;
+                peekActive = false;
+                peekRestore = null;
+                break;
+            case "enableTrace":
+                traceRecorder.setEnabled(config.enableTrace());
+                break;
+            case "planeCulling":
+                clientThread.invoke(() -> {
+                    planeCulling = config.planeCulling();
+                    boolean levelsChanged = updateVisibleLevels();
+                    if ((updateRenderCallback() || levelsChanged) && client.getGameState() == GameState.LOGGED_IN)
+                        reloadScene("Plane culling changed");
+                });
+                break;
+        }
+    }
+
+    // ===== Chat commands: ::terrain <subcommand> =====
+    @Subscribe
+    public void onCommandExecuted(CommandExecuted event)
+    {
+        if (!"terrain".equalsIgnoreCase(event.getCommand()))
+            return;
+
+        String[] args = event.getArguments();
+        String sub = args.length > 0 ? args[0].toLowerCase() : "";
+        switch (sub)
+        {
+            case "save":
+                saveSessionTerrain();
+                break;
+            case "trace":
+                traceRecorder.flush(file -> clientThread.invokeLater(() ->
+                        client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", file != null
+                                ? "<col=00FFFF>[Terrain Toggle]</col> Trace saved to " + file.getAbsolutePath()
+                                : "<col=00FFFF>[Terrain Toggle]</col> <col=ff0000>Unable to save trace</col>", null)));
+                break;
+            case "show":
+            case "hide":
+                if (args.length < 2)
+                {
+                    client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                            "<col=00FFFF>[Terrain Toggle]</col> Usage: ::terrain " + sub + " <region name>", null);
+                    break;
+                }
+                addRegionsByName(sub.equals("show"), String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+                break;
+            default:
+                client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                        "<col=00FFFF>[Terrain Toggle]</col> Usage: ::terrain save | trace | show <name> | hide <name>", null);
+                break;
+        }
+    }
+
+    // ::terrain show|hide <prefix> - list every named region starting with the prefix
+    private void addRegionsByName(boolean show, String prefix)
+    {
+        List<Integer> matches = regionAtlas.findByPrefix(prefix);
+        Set<Integer> list = show ? showRegions : hideRegions;
+        String listName = show ? "Show List" : "Hide List";
+
+        int added = 0;
+        for (int region : matches)
+        {
+            if (list.add(region))
+            {
+                added++;
+                regionListEdited(show ? "Added to Show List" : "Added to Hide List", region);
+            }
+        }
+        if (added > 0)
+            saveRegionListsToConfig();
+
+        String message = matches.isEmpty()
+                ? "No regions named '" + prefix + "'"
+                : "Added " + added + " of " + matches.size() + " regions matching '" + prefix + "' to " + listName;
+        client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "<col=00FFFF>[Terrain Toggle]</col> " + message, null);
+    }
+
+
+
     // ===== Shift + Right-Click Add/Remove Region =====
     private int clickedRegionId = -1;
 
@@ -349,17 +846,19 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
                     .onClick(e -> {
                         if (isInShowList) {
                             showRegions.remove(region);
+                            regionListEdited("Removed from Show List", region);
                             if (config.notificationMode() == TerrainToggleConfig.NotificationMode.Text ||
                                     config.notificationMode() == TerrainToggleConfig.NotificationMode.Both) {
                                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Show List: " + region, null);
+                                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Show List: " + getRegionLabel(region), null);
                             }
                         } else {
                             showRegions.add(region);
+                            regionListEdited("Added to Show List", region);
                             if (config.notificationMode() == TerrainToggleConfig.NotificationMode.Text ||
                                     config.notificationMode() == TerrainToggleConfig.NotificationMode.Both) {
                                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Show List: " + region, null);
+                                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Show List: " + getRegionLabel(region), null);
                             }
                         }
                         saveRegionListsToConfig(); // Save updated list to config
@@ -373,17 +872,19 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
                     .onClick(e -> {
                         if (isInHideList) {
                             hideRegions.remove(region);
+                            regionListEdited("Removed from Hide List", region);
                             if (config.notificationMode() == TerrainToggleConfig.NotificationMode.Text ||
                                     config.notificationMode() == TerrainToggleConfig.NotificationMode.Both) {
                                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Hide List: " + region, null);
+                                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Hide List: " + getRegionLabel(region), null);
                             }
                         } else {
                             hideRegions.add(region);
+                            regionListEdited("Added to Hide List", region);
                             if (config.notificationMode() == TerrainToggleConfig.NotificationMode.Text ||
                                     config.notificationMode() == TerrainToggleConfig.NotificationMode.Both) {
                                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Hide List: " + region, null);
+                                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Hide List: " + getRegionLabel(region), null);
                             }
                         }
                         saveRegionListsToConfig(); // Save updated list to config
@@ -416,35 +917,39 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         // Handle submenu actions based on the selected option
         if (option.equals("Add to Hide List")) {
             hideRegions.add(region);
+            regionListEdited("Added to Hide List", region);
             saveRegionListsToConfig();
             // Send chat message based on notification mode
             if (mode == TerrainToggleConfig.NotificationMode.Text || mode == TerrainToggleConfig.NotificationMode.Both) {
                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Hide List: " + region, null);
+                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Hide List: " + getRegionLabel(region), null);
             }
         } else if (option.equals("Remove from Hide List")) {
             hideRegions.remove(region);
+            regionListEdited("Removed from Hide List", region);
             saveRegionListsToConfig();
             // Send chat message based on notification mode
             if (mode == TerrainToggleConfig.NotificationMode.Text || mode == TerrainToggleConfig.NotificationMode.Both) {
                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Hide List: " + region, null);
+                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Hide List: " + getRegionLabel(region), null);
             }
         } else if (option.equals("Add to Show List")) {
             showRegions.add(region);
+            regionListEdited("Added to Show List", region);
             saveRegionListsToConfig();
             // Send chat message based on notification mode
             if (mode == TerrainToggleConfig.NotificationMode.Text || mode == TerrainToggleConfig.NotificationMode.Both) {
                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Show List: " + region, null);
+                        "<col=00FFFF>[Terrain Toggle]</col> Added region to Show List: " + getRegionLabel(region), null);
             }
         } else if (option.equals("Remove from Show List")) {
             showRegions.remove(region);
+            regionListEdited("Removed from Show List", region);
             saveRegionListsToConfig();
             // Send chat message based on notification mode
             if (mode == TerrainToggleConfig.NotificationMode.Text || mode == TerrainToggleConfig.NotificationMode.Both) {
                 client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
-                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Show List: " + region, null);
+                        "<col=00FFFF>[Terrain Toggle]</col> Removed region from Show List: " + getRegionLabel(region), null);
             }
         }
     }
@@ -453,7 +958,35 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
 
 
     // ===== Hotkey handling =====
-    private String lastChangeReason = "";
+    private volatile String lastChangeReason = "";
+
+    // The hotkey flips this in-memory override instead of writing Display Terrain, so toggling costs no config I/O.
+    // null = follow Display Terrain. ::terrain save writes it to the config.
+    private volatile Boolean sessionTerrain = null;
+    private boolean peekActive = false;
+    private Boolean peekRestore = null;
+
+    private boolean isMasterTerrainEnabled() {
+        Boolean session = sessionTerrain;
+        return session != null ? session : config.enableTerrain();
+    }
+
+    // ::terrain save - make the hotkey state the persistent Display Terrain setting
+    private void saveSessionTerrain() {
+        Boolean session = sessionTerrain;
+        if (session == null) {
+            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                    "<col=00FFFF>[Terrain Toggle]</col> Nothing to save, Display Terrain is already up to date", null);
+            return;
+        }
+
+        sessionTerrain = null;
+        peekActive = false;
+        peekRestore = null;
+        configManager.setConfiguration(TerrainToggleConfig.GROUP, "enableTerrain", String.valueOf(session));
+        client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                "<col=00FFFF>[Terrain Toggle]</col> Saved Display Terrain: " + (session ? "ON" : "OFF"), null);
+    }
 
     @Override
     public void keyPressed(KeyEvent e) {
@@ -465,17 +998,24 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
             consumeKeys = true;
             e.consume();
 
-            // Toggle the master terrain visibility (config setting)
-            boolean newTerrainVisibility = !config.enableTerrain();  // Flip the current setting
+            boolean peek = config.hotkeyMode() == TerrainToggleConfig.HotkeyMode.Hold;
+            if (peek) {
+                // Ignore key repeat while held, remember what to go back to on release
+                if (peekActive) return;
+                peekActive = true;
+                peekRestore = sessionTerrain;
+            }
 
-            // Set the change reason to "Hotkey"
-            lastChangeReason = "Hotkey";
+            // Toggle the master terrain visibility for this session
+            boolean newTerrainVisibility = !isMasterTerrainEnabled();  // Flip the current setting
 
-            // Update the config with the new visibility setting (this will save the updated value)
-            configManager.setConfiguration(TerrainToggleConfig.GROUP, "enableTerrain", String.valueOf(newTerrainVisibility));
+            // Set the change reason to "Hotkey"
+            lastChangeReason = peek ? "Peek" : "Hotkey";
+            traceRecorder.record(TerrainTraceRecorder.Type.HOTKEY, peek ? "Peek" : "Hotkey", currentArea, newTerrainVisibility);
 
-            // Trigger the game state change to reflect the visibility change
-            client.setGameState(GameState.LOADING);  // Forces a refresh/update of the game state
+            // The next rule evaluation picks this up and reloads the scene only if the effective visibility changes
+            sessionTerrain = newTerrainVisibility;
+            evaluationDirty = true;
         }
     }
 
@@ -483,6 +1023,16 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
 
     @Override
     public void keyReleased(KeyEvent e) {
+        // End of a peek: back to the state from before the key went down. Compare the key code only,
+        // modifiers may already have been released.
+        if (peekActive && e.getKeyCode() == config.toggleTerrainHotkey().getKeyCode()) {
+            peekActive = false;
+            sessionTerrain = peekRestore;
+            lastChangeReason = "Peek";
+            traceRecorder.record(TerrainTraceRecorder.Type.HOTKEY, "Peek released", currentArea, isMasterTerrainEnabled());
+            evaluationDirty = true;
+        }
+
         if (consumeKeys) {
             consumeKeys = false;
             e.consume();
@@ -495,6 +1045,18 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
     }
 
     // ===== Utility =====
+    private static Set<Integer> parseRegionCsv(String csv) {
+        Set<Integer> areas = new HashSet<>();
+        if (csv == null || csv.isEmpty())
+            return areas;
+
+        for (String part : csv.split(",")) {
+            try { areas.add(Integer.parseInt(part.trim())); }
+            catch (NumberFormatException ignored) {}
+        }
+        return areas;
+    }
+
     private void loadRegionListsFromConfig() {
         // Load the show/hide region lists from config
         String showCsv = config.showRegions();
@@ -548,12 +1110,202 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
 
         // Optional: Log the updated lists for debugging
         log.info("Region lists reloaded: Show Regions = {} , Hide Regions = {}", showRegions, hideRegions);
+
+        applyRegionLists();
+    }
+
+    // Menu edit bookkeeping: trace it and pass it on to other clients
+    private void regionListEdited(String reason, int region)
+    {
+        traceRecorder.record(TerrainTraceRecorder.Type.MENU_EDIT, reason, region, terrainVisible);
+        publishShared(region);
+        updateInstanceSignature(region);
+    }
+
+    // Remember the chunk signature of instances while they are listed, so similar layouts resolve to the same ID
+    private void updateInstanceSignature(int area)
+    {
+        if (!client.isInInstancedRegion() || isRaid() || instanceSignature == null || area != cachedInstanceId)
+            return;
+
+        boolean listed = showRegions.contains(area) || hideRegions.contains(area);
+        if (listed == instanceMatcher.contains(area))
+            return;
+
+        if (listed)
+            instanceMatcher.add(area, instanceSignature);
+        else
+            instanceMatcher.remove(area);
+
+        configManager.setConfiguration(TerrainToggleConfig.GROUP, "instanceSignatures", instanceMatcher.serialize());
+    }
+
+    // ===== Shared rule store =====
+    private void openSharedStore()
+    {
+        closeSharedStore();
+        if (!config.useSharedRuleStore())
+            return;
+
+        try
+        {
+            sharedStore = SharedRuleStore.open(new File(DATA_DIR, "shared-rules.dat"));
+
+            // Joining merges: areas only this client has are handed on, areas already shared take the store's state.
+            // Nothing local is dropped, so a later saveRegionListsToConfig() can't lose this client's lists.
+            Map<Integer, Integer> shared = new HashMap<>();
+            sharedStore.readAll(shared::put);
+
+            Set<Integer> areas = new HashSet<>(showRegions);
+            areas.addAll(hideRegions);
+            for (int area : areas)
+            {
+                if (!shared.containsKey(area))
+                    publishShared(area);
+            }
+
+            shared.forEach(this::applySharedChange);
+            applyRegionLists();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to open shared rule store", e);
+            closeSharedStore();
+            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                    "<col=00FFFF>[Terrain Toggle]</col> <col=ff0000>Unable to open shared rule store</col>", null);
+        }
+    }
+
+    private void closeSharedStore()
+    {
+        if (sharedStore == null)
+            return;
+
+        try
+        {
+            sharedStore.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to close shared rule store", e);
+        }
+        sharedStore = null;
+    }
+
+    // Pick up edits made by other clients, only touching the rule table if something changed
+    private void pollSharedStore()
+    {
+        if (sharedStore == null)
+            return;
+
+        try
+        {
+            // applyRegionLists() marks the evaluation dirty
+            if (sharedStore.poll(this::applySharedChange))
+                applyRegionLists();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to read shared rule store", e);
+        }
+    }
+
+    private void applySharedChange(int area, int state)
+    {
+        if ((state & SharedRuleStore.SHOW) != 0)
+            showRegions.add(area);
+        else
+            showRegions.remove(area);
+
+        if ((state & SharedRuleStore.HIDE) != 0)
+            hideRegions.add(area);
+        else
+            hideRegions.remove(area);
+    }
+
+    private void publishShared(int area)
+    {
+        if (sharedStore == null)
+            return;
+
+        int state = (showRegions.contains(area) ? SharedRuleStore.SHOW : 0)
+                | (hideRegions.contains(area) ? SharedRuleStore.HIDE : 0);
+        try
+        {
+            sharedStore.put(area, state);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write shared rule store", e);
+        }
+    }
+
+    // ===== Terrain Rules =====
+    private void parseRules()
+    {
+        List<String> errors = new ArrayList<>();
+        RegionGroups groups = new RegionGroups();
+        userRules = TerrainRuleCompiler.parse(config.rules(), groups, errors);
+        userGroups = groups;
+        compileRules(errors);
+        ruleErrors = errors;
+        reportRuleErrors(ruleErrors);
+    }
+
+    // Rebuild the decision table from the parsed rules. Only needed when the rules text changes.
+    // Compile errors join the parse errors, so they are counted in the overlay and reported in chat alike.
+    private void compileRules(List<String> errors)
+    {
+        TerrainRuleTable table = TerrainRuleCompiler.compile(userRules, userGroups, errors);
+        if (table == null)
+        {
+            // Keep evaluating with the last table that compiled
+            return;
+        }
+
+        compiledRules = table;
+        log.debug("Compiled {} terrain rules into {} table entries", userRules.size(), table.size());
+        applyRegionLists();
+    }
+
+    // Slot the current Show/Hide lists in with the compiled rules, a hash lookup rebuilt without recompiling
+    private void applyRegionLists()
+    {
+        ruleTable = compiledRules.withLists(showRegions, hideRegions);
+        evaluationDirty = true;
+    }
+
+    private void reportRuleErrors(List<String> errors)
+    {
+        if (errors.isEmpty())
+            return;
+
+        for (String error : errors)
+            log.warn("Terrain rule error: {}", error);
+
+        // Overlay-only users see the error count in the overlay, everyone else gets the details in chat
+        if (config.notificationMode() == TerrainToggleConfig.NotificationMode.Overlay)
+            return;
+
+        int shown = Math.min(errors.size(), 3);
+        for (int i = 0; i < shown; i++)
+        {
+            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                    "<col=00FFFF>[Terrain Toggle]</col> <col=ff0000>Rule error</col> " + errors.get(i), null);
+        }
+        if (errors.size() > shown)
+        {
+            client.addChatMessage(ChatMessageType.GAMEMESSAGE, "",
+                    "<col=00FFFF>[Terrain Toggle]</col> ... and " + (errors.size() - shown) + " more rule errors", null);
+        }
     }
 
 
 
 
     private void saveRegionListsToConfig() {
+        applyRegionLists();
+
         StringBuilder showSb = new StringBuilder();
         StringBuilder hideSb = new StringBuilder();
 
@@ -581,6 +1333,38 @@ public class TerrainTogglePlugin extends Plugin implements KeyListener {
         return terrainVisible;
     }
 
+    // True while the hotkey has changed the master toggle without saving it
+    public boolean hasSessionOverride() {
+        return sessionTerrain != null;
+    }
+
+    // Number of problems found the last time Terrain Rules were parsed and compiled
+    public int getRuleErrorCount() {
+        return ruleErrors.size();
+    }
+
+    // "Lumbridge (12850)" for named world regions; instance and raid room IDs stay plain numbers
+    public String getRegionLabel(int area) {
+        if (client.isInInstancedRegion())
+            return String.valueOf(area);
+        return regionAtlas.label(area);
+    }
+
+    // Median forced reload time in the current area, -1 if never timed
+    public int getReloadCost() {
+        return reloadCosts.medianMillis(currentArea);
+    }
+
+    // True while a terrain change is waiting for the next natural scene load
+    public boolean isReloadDeferred() {
+        return reloadDeferred;
+    }
+
+    // False once the probe has found the renderer ignores drawTile
+    public boolean isRendererSupported() {
+        return rendererProbe.getState() != RendererProbe.State.UNSUPPORTED;
+    }
+
     // New getter for hotkey enabled status
     public boolean isHotkeyEnabled() {
         return config.enableHotkey();
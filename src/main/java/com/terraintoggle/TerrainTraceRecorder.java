@@ -0,0 +1,158 @@
+package com.terraintoggle;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+// Fixed-size ring buffer of terrain state transitions, cheap enough to leave on all the time.
+// Recording writes into preallocated arrays (reasons are expected to be string constants), so it never allocates;
+// only flush() copies the buffer and hands it to a background thread to write out as JSONL.
+@Slf4j
+@Singleton
+public class TerrainTraceRecorder
+{
+    enum Type
+    {
+        DECISION,   // a rule evaluation changed the terrain visibility
+        REGION,     // entered/left a ruled area without a visibility change
+        HOTKEY,
+        MENU_EDIT,
+        RELOAD
+    }
+
+    private static final int CAPACITY = 1024;  // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final Type[] TYPES = Type.values();
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("'trace-'yyyyMMdd-HHmmss'.jsonl'");
+
+    private final Client client;
+    private final ScheduledExecutorService executor;
+    private final Gson gson;
+
+    private final long[] times = new long[CAPACITY];
+    private final int[] ticks = new int[CAPACITY];
+    private final int[] areas = new int[CAPACITY];
+    private final byte[] types = new byte[CAPACITY];
+    private final boolean[] visible = new boolean[CAPACITY];
+    private final String[] reasons = new String[CAPACITY];
+    private final Thread[] threads = new Thread[CAPACITY];
+    private long written = 0;
+
+    private volatile boolean enabled = true;
+
+    @Inject
+    TerrainTraceRecorder(Client client, ScheduledExecutorService executor, Gson gson)
+    {
+        this.client = client;
+        this.executor = executor;
+        this.gson = gson;
+    }
+
+    void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    // Safe from any thread (hotkeys arrive on the AWT thread, everything else on the client thread)
+    void record(Type type, String reason, int area, boolean terrainVisible)
+    {
+        if (!enabled)
+            return;
+
+        synchronized (this)
+        {
+            int i = (int) (written++ & MASK);
+            times[i] = System.currentTimeMillis();
+            ticks[i] = client.getTickCount();
+            areas[i] = area;
+            types[i] = (byte) type.ordinal();
+            visible[i] = terrainVisible;
+            reasons[i] = reason;
+            threads[i] = Thread.currentThread();
+        }
+    }
+
+    // Copies out what is in the buffer and writes it on the executor. onWritten receives the file, or null on failure.
+    void flush(Consumer<File> onWritten)
+    {
+        final int count;
+        final long[] t;
+        final int[] tk, ar;
+        final byte[] ty;
+        final boolean[] vis;
+        final String[] rs;
+        final String[] th;
+
+        synchronized (this)
+        {
+            count = (int) Math.min(written, CAPACITY);
+            t = new long[count];
+            tk = new int[count];
+            ar = new int[count];
+            ty = new byte[count];
+            vis = new boolean[count];
+            rs = new String[count];
+            th = new String[count];
+
+            // Oldest entry first
+            long start = written - count;
+            for (int n = 0; n < count; n++)
+            {
+                int i = (int) ((start + n) & MASK);
+                t[n] = times[i];
+                tk[n] = ticks[i];
+                ar[n] = areas[i];
+                ty[n] = types[i];
+                vis[n] = visible[i];
+                rs[n] = reasons[i];
+                th[n] = threads[i].getName();
+            }
+        }
+
+        executor.submit(() ->
+        {
+            File file = new File(TerrainTogglePlugin.DATA_DIR, LocalDateTime.now().format(FILE_NAME));
+            try
+            {
+                TerrainTogglePlugin.DATA_DIR.mkdirs();
+                try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+                {
+                    for (int n = 0; n < count; n++)
+                    {
+                        JsonObject line = new JsonObject();
+                        line.addProperty("time", Instant.ofEpochMilli(t[n]).toString());
+                        line.addProperty("tick", tk[n]);
+                        line.addProperty("type", TYPES[ty[n]].name());
+                        line.addProperty("reason", rs[n]);
+                        line.addProperty("area", ar[n]);
+                        line.addProperty("visible", vis[n]);
+                        line.addProperty("thread", th[n]);
+                        writer.write(gson.toJson(line));
+                        writer.newLine();
+                    }
+                }
+                log.debug("Wrote {} trace entries to {}", count, file);
+                onWritten.accept(file);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to write terrain trace", e);
+                onWritten.accept(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.terraintoggle;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Checks the region-names.bin that generateRegionAtlas builds from src/main/atlas/region-names.csv
+public class RegionAtlasTest
+{
+	@Test
+	public void namesKnownRegions()
+	{
+		RegionAtlas atlas = new RegionAtlas();
+		assertEquals("Lumbridge", atlas.name(12850));
+		assertEquals("Seers' Village", atlas.name(10806));
+		assertEquals("Lumbridge (12850)", atlas.label(12850));
+	}
+
+	@Test
+	public void unknownRegionIsJustItsId()
+	{
+		RegionAtlas atlas = new RegionAtlas();
+		assertNull(atlas.name(1));
+		assertEquals("1", atlas.label(1));
+	}
+
+	@Test
+	public void prefixSearchIgnoresCase()
+	{
+		RegionAtlas atlas = new RegionAtlas();
+		assertEquals(Collections.singletonList(10547), atlas.findByPrefix("east ARD"));
+		assertEquals(Collections.singletonList(12850), atlas.findByPrefix("lumbridge"));
+		assertTrue(atlas.findByPrefix("zzz").isEmpty());
+	}
+
+	@Test
+	public void prefixSearchFindsEveryMatch()
+	{
+		// Canifis, Castle Wars and Catherby sit next to each other in name order
+		List<Integer> matches = new RegionAtlas().findByPrefix("ca");
+		assertEquals(3, matches.size());
+		assertTrue(matches.containsAll(List.of(13878, 9520, 11061)));
+	}
+
+	@Test
+	public void sharedNamesMatchAsOne()
+	{
+		// Every Wilderness region carries the same name, so one prefix finds the whole block
+		List<Integer> matches = new RegionAtlas().findByPrefix("wilderness");
+		assertEquals(7 * 7, matches.size());
+		assertTrue(matches.contains((46 << 8) | 55));
+		assertTrue(matches.contains((52 << 8) | 61));
+	}
+}
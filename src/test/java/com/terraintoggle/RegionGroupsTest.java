@@ -0,0 +1,160 @@
+package com.terraintoggle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RegionGroupsTest
+{
+	private static final byte NO_MATCH = TerrainRuleTable.NO_MATCH;
+	private static final byte SHOW = TerrainRuleTable.SHOW;
+	private static final byte HIDE = TerrainRuleTable.HIDE;
+
+	@Test
+	public void rectIsInclusiveInAnyCornerOrder()
+	{
+		RegionGroups groups = new RegionGroups();
+		int group = groups.define("wild");
+		groups.addRect(group, 52, 61, 46, 55);
+
+		assertTrue(groups.contains(group, region(46, 55)));
+		assertTrue(groups.contains(group, region(52, 61)));
+		assertTrue(groups.contains(group, region(49, 58)));
+		assertFalse(groups.contains(group, region(45, 58)));
+		assertFalse(groups.contains(group, region(49, 62)));
+		assertFalse(groups.contains(group, -1));
+		assertFalse(groups.contains(group, 1 << 16));
+	}
+
+	@Test
+	public void rectIsClampedToTheGrid()
+	{
+		RegionGroups groups = new RegionGroups();
+		int group = groups.define("edge");
+		groups.addRect(group, -10, 250, 1, 300);
+		assertTrue(groups.contains(group, region(0, 255)));
+		assertTrue(groups.contains(group, region(1, 250)));
+		assertFalse(groups.contains(group, region(2, 250)));
+	}
+
+	@Test
+	public void polygonTakesCellCentresInsideAndItsVertices()
+	{
+		RegionGroups groups = new RegionGroups();
+		int group = groups.define("tri");
+		groups.addPolygon(group, new int[] {10, 20, 10}, new int[] {10, 10, 20});
+
+		assertTrue(groups.contains(group, region(12, 12)));
+		assertTrue(groups.contains(group, region(14, 14)));  // centre (14.5, 14.5) is under the hypotenuse
+		assertFalse(groups.contains(group, region(15, 15))); // centre (15.5, 15.5) is over it
+		assertTrue(groups.contains(group, region(20, 10)));  // vertex
+		assertTrue(groups.contains(group, region(10, 20)));  // vertex
+		assertFalse(groups.contains(group, region(9, 12)));
+	}
+
+	@Test
+	public void namesAreCaseInsensitiveAndRedefiningAdds()
+	{
+		RegionGroups groups = new RegionGroups();
+		int first = groups.define("Bank");
+		groups.addRect(first, 1, 1, 1, 1);
+		int second = groups.define("bank");
+		groups.addRect(second, 2, 2, 2, 2);
+
+		assertEquals(first, second);
+		assertEquals(1, groups.size());
+		assertEquals(first, groups.indexOf("BANK"));
+		assertEquals(-1, groups.indexOf("vault"));
+		assertTrue(groups.contains(first, region(1, 1)));
+		assertTrue(groups.contains(first, region(2, 2)));
+	}
+
+	@Test
+	public void groupRulesMatchEveryRegionInTheGroup()
+	{
+		TerrainRuleTable table = TerrainRuleCompilerTest.compile(
+				"10 hide group=wild\n"
+				+ "1 hide group!=wild plane=1\n"
+				+ "group wild rect 46 55 52 61");  // defined after its first use
+
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(46, 55), 0)));
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(50, 60), 0)));
+		assertEquals(NO_MATCH, table.evaluate(TerrainRuleCompilerTest.at(region(50, 50), 0)));
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(50, 50), 1)));
+	}
+
+	@Test
+	public void explicitRegionInsideAGroupKeepsItsOwnRules()
+	{
+		int ferox = region(49, 56);
+		TerrainRuleTable table = TerrainRuleCompilerTest.compile(
+				"group wild rect 46 55 52 61\n"
+				+ "group tri poly 10 10 20 10 10 20\n"
+				+ "10 hide group=wild\n"
+				+ "20 show region=" + ferox + "\n"
+				+ "5 show group=tri plane=1");
+
+		assertEquals(SHOW, table.evaluate(TerrainRuleCompilerTest.at(ferox, 0)));
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(49, 57), 0)));
+		assertEquals(SHOW, table.evaluate(TerrainRuleCompilerTest.at(region(12, 12), 1)));
+		assertEquals(NO_MATCH, table.evaluate(TerrainRuleCompilerTest.at(region(12, 12), 0)));
+		assertEquals(NO_MATCH, table.evaluate(TerrainRuleCompilerTest.at(region(19, 19), 1)));
+		// Regions outside the grid (no location) fall in the "no group" class
+		assertEquals(NO_MATCH, table.evaluate(TerrainRuleCompilerTest.at(-1, 0)));
+	}
+
+	@Test
+	public void groupsCanIncludeOtherGroups()
+	{
+		TerrainRuleTable table = TerrainRuleCompilerTest.compile(
+				"hide group=world\n"
+				+ "group world group=north group=south\n"  // includes a group that is itself only includes
+				+ "group north group=wild\n"
+				+ "group wild rect 46 55 52 61\n"
+				+ "group south rect 40 40 41 41\n"
+				+ "group wild group=north");                 // cycles just merge
+
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(50, 60), 0)));
+		assertEquals(HIDE, table.evaluate(TerrainRuleCompilerTest.at(region(41, 40), 0)));
+		assertEquals(NO_MATCH, table.evaluate(TerrainRuleCompilerTest.at(region(45, 45), 0)));
+	}
+
+	@Test
+	public void badGroupsAreReported()
+	{
+		List<String> errors = new ArrayList<>();
+		RegionGroups groups = new RegionGroups();
+		List<TerrainRule> rules = TerrainRuleCompiler.parse(
+				"group a rect 1 2 3\ngroup b poly 1 2 3 4\ngroup c circle 1 2 3\nhide group=nope\ngroup d group=nope",
+				groups, errors);
+		assertTrue(rules.isEmpty());
+		assertEquals(5, errors.size());
+		assertEquals(1, groups.size());  // d is named, but empty
+	}
+
+	@Test
+	public void tooManyGroupsIsRejected()
+	{
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i <= TerrainRuleCompiler.MAX_GROUPS; i++)
+			text.append("group g").append(i).append(" rect ").append(i).append(" 0 ").append(i).append(" 0\nhide group=g").append(i).append('\n');
+
+		List<String> errors = new ArrayList<>();
+		RegionGroups groups = new RegionGroups();
+		List<TerrainRule> rules = TerrainRuleCompiler.parse(text.toString(), groups, errors);
+		assertTrue(errors.isEmpty());
+		assertNull(TerrainRuleCompiler.compile(rules, groups, errors));
+		assertEquals(1, errors.size());
+	}
+
+	private static int region(int x, int y)
+	{
+		return (x << 8) | y;
+	}
+}
@@ -0,0 +1,95 @@
+package com.terraintoggle;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadCostModelTest
+{
+	@Test
+	public void usesOnlyTheLastSamples()
+	{
+		ReloadCostModel model = new ReloadCostModel();
+		assertEquals(-1, model.medianMillis(1));
+		for (int i = 0; i < 10; i++)
+			model.record(1, i < 2 ? 1000 : 100);
+		// The two slow samples have rolled out of the window
+		assertEquals(100, model.medianMillis(1));
+	}
+
+	@Test
+	public void oneOutlierDoesNotMoveTheMedian()
+	{
+		ReloadCostModel model = new ReloadCostModel();
+		for (int i = 0; i < 7; i++)
+			model.record(1, 100);
+		model.record(1, 9000);
+		assertEquals(100, model.medianMillis(1));
+	}
+
+	@Test
+	public void dropsImpossibleSamples()
+	{
+		ReloadCostModel model = new ReloadCostModel();
+		assertFalse(model.record(1, ReloadCostModel.MAX_SAMPLE_MILLIS + 1));
+		assertFalse(model.record(1, -5));
+		assertEquals(-1, model.medianMillis(1));
+	}
+
+	@Test
+	public void evictsLeastRecentlyReloadedNotLeastRecentlyRead()
+	{
+		ReloadCostModel model = new ReloadCostModel();
+		for (int area = 0; area < 256; area++)
+			model.record(area, 50);
+
+		// The overlay reading area 0 every frame must not keep it alive
+		model.medianMillis(0);
+		model.record(1, 50);
+		model.record(256, 50);
+
+		assertEquals(-1, model.medianMillis(0));
+		assertEquals(50, model.medianMillis(1));
+		assertEquals(50, model.medianMillis(256));
+	}
+
+	@Test
+	public void asksForASaveAfterSaveEverySamples()
+	{
+		ReloadCostModel model = new ReloadCostModel();
+		for (int i = 1; i < ReloadCostModel.SAVE_EVERY; i++)
+			assertFalse(model.record(i, 10));
+		assertTrue(model.record(0, 10));
+	}
+
+	@Test
+	public void roundTripsThroughAFile() throws Exception
+	{
+		File file = Files.createTempFile("reload-costs", ".txt").toFile();
+		try
+		{
+			ReloadCostModel model = new ReloadCostModel();
+			model.record(12850, 200);
+			model.record(12850, 400);
+			model.save(file);
+
+			ReloadCostModel loaded = new ReloadCostModel();
+			loaded.record(12850, 5000);
+			loaded.load(file);
+			assertEquals(300, loaded.medianMillis(12850));
+
+			// A save resets the counter, loading doesn't count as new samples
+			for (int i = 1; i < ReloadCostModel.SAVE_EVERY; i++)
+				assertFalse(loaded.record(i, 10));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
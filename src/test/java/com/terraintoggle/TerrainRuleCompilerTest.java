@@ -0,0 +1,161 @@
+package com.terraintoggle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TerrainRuleCompilerTest
+{
+	private static final byte NO_MATCH = TerrainRuleTable.NO_MATCH;
+	private static final byte SHOW = TerrainRuleTable.SHOW;
+	private static final byte HIDE = TerrainRuleTable.HIDE;
+
+	@Test
+	public void noRulesNeverMatch()
+	{
+		assertEquals(NO_MATCH, TerrainRuleTable.EMPTY.evaluate(at(12850, 0)));
+		assertEquals(NO_MATCH, compile("# nothing but a comment").evaluate(at(12850, 0)));
+	}
+
+	@Test
+	public void highestPriorityWins()
+	{
+		TerrainRuleTable table = compile("10 hide region=12850\n20 show plane=0");
+		assertEquals(SHOW, table.evaluate(at(12850, 0)));
+		assertEquals(HIDE, table.evaluate(at(12850, 1)));
+		assertEquals(SHOW, table.evaluate(at(1, 0)));
+		assertEquals(NO_MATCH, table.evaluate(at(1, 1)));
+	}
+
+	@Test
+	public void priorityTiesGoToTheRuleWrittenFirst()
+	{
+		assertEquals(SHOW, compile("5 show area=1\n5 hide area=1").evaluate(at(1, 0)));
+		assertEquals(HIDE, compile("5 hide area=1\n5 show area=1").evaluate(at(1, 0)));
+		// No priority means 0
+		assertEquals(HIDE, compile("hide area=1\n0 show area=1").evaluate(at(1, 0)));
+	}
+
+	@Test
+	public void conditionsAreAndedAndCanBeNegated()
+	{
+		TerrainRuleTable table = compile("hide region=12850 plane!=2");
+		assertEquals(HIDE, table.evaluate(at(12850, 0)));
+		assertEquals(NO_MATCH, table.evaluate(at(12850, 2)));
+		assertEquals(NO_MATCH, table.evaluate(at(12851, 0)));
+	}
+
+	@Test
+	public void valuesNoRuleMentionsShareOneClass()
+	{
+		TerrainRuleTable table = compile("hide plane!=1\n5 show room=5");
+		// Plane 3 and room -1/7 are never written in a rule, they still have to evaluate correctly
+		assertEquals(HIDE, table.evaluate(at(1, 3)));
+		assertEquals(NO_MATCH, table.evaluate(at(1, 1)));
+		assertEquals(SHOW, table.evaluate(new LocationSnapshot(1, -1, 5, 1, 1)));
+		assertEquals(HIDE, table.evaluate(new LocationSnapshot(1, -1, 7, 1, 0)));
+	}
+
+	@Test
+	public void listsRankBetweenRulesAboveAndBelowListPriority()
+	{
+		TerrainRuleTable table = compile("1 show area=7\n-1 show area=8\n0 hide area=9\n-1 hide area=10")
+				.withLists(List.of(9), List.of(7, 8));
+		assertEquals(SHOW, table.evaluate(at(7, 0)));    // rule above the lists
+		assertEquals(HIDE, table.evaluate(at(8, 0)));    // list above the rule
+		assertEquals(HIDE, table.evaluate(at(9, 0)));    // a user rule at list priority still wins
+		assertEquals(HIDE, table.evaluate(at(10, 0)));   // rules below the lists still apply when no list matches
+		assertEquals(NO_MATCH, table.evaluate(at(11, 0)));
+	}
+
+	@Test
+	public void showListWinsOverHideList()
+	{
+		TerrainRuleTable table = TerrainRuleTable.EMPTY.withLists(List.of(5), List.of(5, 6));
+		assertEquals(SHOW, table.evaluate(at(5, 0)));
+		assertEquals(HIDE, table.evaluate(at(6, 0)));
+	}
+
+	@Test
+	public void listSizeDoesNotGrowTheTable()
+	{
+		StringBuilder rules = new StringBuilder();
+		for (int i = 0; i < 60; i++)
+			rules.append("10 show region=").append(10000 + i).append(" plane!=1\n");
+		TerrainRuleTable table = compile(rules.toString());
+
+		Set<Integer> hide = new HashSet<>();
+		for (int area = 0; area < 5000; area++)
+			hide.add(20000 + area);
+		TerrainRuleTable withLists = table.withLists(Collections.emptySet(), hide);
+
+		assertEquals(table.size(), withLists.size());
+		assertEquals(HIDE, withLists.evaluate(at(24999, 0)));
+		assertEquals(SHOW, withLists.evaluate(new LocationSnapshot(10059, -1, -1, 24999, 0)));
+		assertEquals(HIDE, withLists.evaluate(new LocationSnapshot(10059, -1, -1, 24999, 1)));
+	}
+
+	@Test
+	public void tableOverTheCellCapIsRejected()
+	{
+		StringBuilder rules = new StringBuilder();
+		for (int i = 0; i < 600; i++)
+			rules.append("hide room=").append(i).append("\nhide instance=").append(i).append('\n');
+
+		List<String> errors = new ArrayList<>();
+		RegionGroups groups = new RegionGroups();
+		List<TerrainRule> parsed = TerrainRuleCompiler.parse(rules.toString(), groups, errors);
+		assertTrue(errors.isEmpty());
+		assertNull(TerrainRuleCompiler.compile(parsed, groups, errors));
+		assertEquals(1, errors.size());
+	}
+
+	@Test
+	public void badLinesAreReportedAndSkipped()
+	{
+		List<String> errors = new ArrayList<>();
+		List<TerrainRule> rules = TerrainRuleCompiler.parse(
+				"hide region=12850\nbogus\nhide foo=1\nhide plane=x\nhide region=70000\nshow plane=2 # trailing comment",
+				new RegionGroups(), errors);
+		assertEquals(2, rules.size());
+		assertEquals(4, errors.size());
+		assertTrue(errors.get(0).startsWith("Line 2:"));
+	}
+
+	@Test
+	public void casualSyntaxIsAccepted()
+	{
+		List<String> errors = new ArrayList<>();
+		List<TerrainRule> rules = TerrainRuleCompiler.parse("3 HIDE when region=1 and plane=0", new RegionGroups(), errors);
+		assertTrue(errors.isEmpty());
+		assertEquals(1, rules.size());
+		assertEquals(3, rules.get(0).priority);
+		assertFalse(rules.get(0).show);
+		assertEquals(2, rules.get(0).conditions.size());
+	}
+
+	static TerrainRuleTable compile(String text)
+	{
+		List<String> errors = new ArrayList<>();
+		RegionGroups groups = new RegionGroups();
+		TerrainRuleTable table = TerrainRuleCompiler.compile(TerrainRuleCompiler.parse(text, groups, errors), groups, errors);
+		assertEquals(Collections.emptyList(), errors);
+		assertNotNull(table);
+		return table;
+	}
+
+	static LocationSnapshot at(int regionAndArea, int plane)
+	{
+		return new LocationSnapshot(regionAndArea, -1, -1, regionAndArea, plane);
+	}
+}